@@ -0,0 +1,173 @@
+package auctionaire;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+
+public class AdminGUI extends JFrame {
+    private final AuctionManager auctionManager;
+    private final JTable auctionTable;
+    private final AuctionTableModel tableModel;
+    private final ArchiveTableModel archiveModel;
+    private final JLabel archivePageLabel = new JLabel(" ");
+    private final JButton newerButton = new JButton("< Newer");
+    private final JButton olderButton = new JButton("Older >");
+    private final JLabel metricsLabel = new JLabel(" ");
+    // Set by the event pipeline whenever auctions are created, bid on or ended
+    private volatile boolean auctionsChanged = true;
+
+    public AdminGUI(AuctionManager manager) {
+        this.auctionManager = manager;
+        
+        setTitle("Auctionaire Admin Panel");
+        setSize(850, 600);
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setLayout(new BorderLayout());
+
+        JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        topPanel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+        JTextField itemNameField = new JTextField(15);
+        JTextField timeField = new JTextField(5);
+        JTextField startPriceField = new JTextField(8);
+        JButton addButton = new JButton("Add Auction");
+
+        topPanel.add(new JLabel("Item Name:"));
+        topPanel.add(itemNameField);
+        topPanel.add(new JLabel("Duration (s):"));
+        topPanel.add(timeField);
+        topPanel.add(new JLabel("Start Price:"));
+        topPanel.add(startPriceField);
+        topPanel.add(addButton);
+
+        tableModel = new AuctionTableModel(auctionManager);
+        auctionTable = new JTable(tableModel);
+        auctionTable.setRowHeight(25);
+        JScrollPane scrollPane = new JScrollPane(auctionTable);
+        
+        Action stopAction = new AbstractAction("Stop") {
+            public void actionPerformed(ActionEvent e) {
+                int modelRow = Integer.parseInt(e.getActionCommand());
+                int auctionId = tableModel.getAuctionAt(modelRow).getId();
+                try {
+                    auctionManager.stopAuction(auctionId);
+                } catch (IllegalStateException ex) {
+                    JOptionPane.showMessageDialog(AdminGUI.this, ex.getMessage(), "Journal Error", JOptionPane.ERROR_MESSAGE);
+                }
+                updateAuctionList();
+            }
+        };
+        new ButtonColumn(auctionTable, stopAction, tableModel.getColumnCount() - 1);
+
+        // Ended auctions move out of the live table once archived; the archive tab pages through them
+        archiveModel = new ArchiveTableModel(auctionManager);
+        JTable archiveTable = new JTable(archiveModel);
+        archiveTable.setRowHeight(25);
+        JPanel archiveNav = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        archiveNav.add(newerButton);
+        archiveNav.add(olderButton);
+        archiveNav.add(archivePageLabel);
+        newerButton.addActionListener(e -> {
+            archiveModel.showNewer();
+            updateArchivePage();
+        });
+        olderButton.addActionListener(e -> {
+            archiveModel.showOlder();
+            updateArchivePage();
+        });
+        JPanel archivePanel = new JPanel(new BorderLayout());
+        archivePanel.add(new JScrollPane(archiveTable), BorderLayout.CENTER);
+        archivePanel.add(archiveNav, BorderLayout.SOUTH);
+
+        JTabbedPane tabs = new JTabbedPane();
+        tabs.addTab("Live", scrollPane);
+        tabs.addTab("Archive", archivePanel);
+
+        add(topPanel, BorderLayout.NORTH);
+        add(tabs, BorderLayout.CENTER);
+
+        JPanel metricsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        metricsPanel.setBorder(BorderFactory.createTitledBorder("Server Metrics"));
+        metricsPanel.add(metricsLabel);
+        add(metricsPanel, BorderLayout.SOUTH);
+
+        addButton.addActionListener(e -> {
+            try {
+                String name = itemNameField.getText();
+                int time = Integer.parseInt(timeField.getText());
+                double price = Double.parseDouble(startPriceField.getText());
+                if(name.trim().isEmpty() || time <= 0 || price < 0){
+                    JOptionPane.showMessageDialog(this, "Please enter valid auction details.", "Input Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                auctionManager.addAuction(name, time, price);
+                itemNameField.setText("");
+                timeField.setText("");
+                startPriceField.setText("");
+                updateAuctionList();
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(this, "Please enter valid numbers for time and price.", "Input Error", JOptionPane.ERROR_MESSAGE);
+            } catch (IllegalStateException ex) {
+                JOptionPane.showMessageDialog(this, ex.getMessage(), "Journal Error", JOptionPane.ERROR_MESSAGE);
+            }
+        });
+        
+        // The live table follows auction events, at most one refresh per 100 ms however many arrive;
+        // countdowns and archiving only need the once-a-second pass
+        auctionManager.addEventHandler(batch -> auctionsChanged = true);
+        new Timer(100, e -> {
+            if (auctionsChanged) updateAuctionList();
+        }).start();
+        new Timer(1000, e -> {
+            updateAuctionList();
+            updateMetrics();
+            updateArchivePage();
+        }).start();
+        updateArchivePage();
+
+        setLocationRelativeTo(null);
+        setVisible(true);
+    }
+
+    public void updateAuctionList() {
+        auctionsChanged = false;
+        tableModel.refresh();
+    }
+
+    private void updateArchivePage() {
+        archiveModel.refresh();
+        newerButton.setEnabled(archiveModel.hasNewer());
+        olderButton.setEnabled(archiveModel.hasOlder());
+        archivePageLabel.setText(archiveModel.getPageDescription());
+    }
+
+    // The same numbers /api/metrics serves, condensed for the panel
+    private void updateMetrics() {
+        Metrics metrics = auctionManager.getMetrics();
+        long accepted = metrics.getBidCount(BidResult.ACCEPTED) + metrics.getBidCount(BidResult.OUTBID);
+        StringBuilder rejected = new StringBuilder();
+        for (BidResult result : BidResult.values()) {
+            if (result.isPlaced()) continue;
+            rejected.append(rejected.length() == 0 ? "" : ", ").append(result.getCode()).append(' ').append(metrics.getBidCount(result));
+        }
+        StringBuilder text = new StringBuilder("<html>")
+            .append("Active auctions: ").append(auctionManager.getActiveAuctionCount())
+            .append(" &nbsp; Archived: ").append(auctionManager.getArchivedCount())
+            .append(" &nbsp; Bidders: ").append(auctionManager.getBidderCount())
+            .append(" &nbsp; In flight: ").append(metrics.getGaugeTotal("auctionaire_http_in_flight"))
+            .append(" &nbsp; Expiry lag p99: ").append(formatSeconds(metrics.getExpiryLag().quantile(0.99)))
+            .append(" &nbsp; Event backlog: ").append(metrics.getGaugeTotal("auctionaire_event_backlog"))
+            .append("<br>Bids accepted: ").append(accepted).append(" &nbsp; rejected: ").append(rejected)
+            .append("<br>p99 latency:");
+        for (Metrics.Endpoint endpoint : metrics.getEndpoints()) {
+            if (endpoint.timed && endpoint.latency.getCount() > 0) {
+                text.append(" &nbsp; ").append(endpoint.handler).append(' ').append(formatSeconds(endpoint.latency.quantile(0.99)));
+            }
+        }
+        metricsLabel.setText(text.append("</html>").toString());
+    }
+
+    private static String formatSeconds(double seconds) {
+        if (Double.isInfinite(seconds)) return "&gt;5 s";
+        return seconds < 1 ? "&le;" + Math.round(seconds * 1e6) / 1000.0 + " ms" : "&le;" + seconds + " s";
+    }
+}
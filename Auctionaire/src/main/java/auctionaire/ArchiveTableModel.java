@@ -0,0 +1,96 @@
+package auctionaire;
+
+import javax.swing.table.AbstractTableModel;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Admin table over the auction archive, one page of PAGE_SIZE auctions at a time, newest first.
+ * Pages are addressed by the id they start below, so stepping through them reads only the rows
+ * shown no matter how large the archive has grown.
+ */
+class ArchiveTableModel extends AbstractTableModel {
+    static final int PAGE_SIZE = 50;
+    private static final String[] COLUMN_NAMES = {"ID", "Item Name", "Start Price", "Final Bid", "Highest Bidder", "Status"};
+
+    private final AuctionManager auctionManager;
+    private final Deque<Integer> newerPages = new ArrayDeque<>();
+    private List<AuctionArchive.ArchivedAuction> rows = new ArrayList<>();
+    private int pageStart = Integer.MAX_VALUE;
+    private boolean hasOlder;
+    private int loadedCount = -1;
+
+    ArchiveTableModel(AuctionManager auctionManager) {
+        this.auctionManager = auctionManager;
+    }
+
+    /** Reloads the newest page when something was archived since it was read; older pages never change. */
+    public void refresh() {
+        if (newerPages.isEmpty() && auctionManager.getArchivedCount() != loadedCount) {
+            load();
+        }
+    }
+
+    public void showOlder() {
+        if (!hasOlder) return;
+        newerPages.push(pageStart);
+        pageStart = rows.get(rows.size() - 1).id;
+        load();
+    }
+
+    public void showNewer() {
+        if (newerPages.isEmpty()) return;
+        pageStart = newerPages.pop();
+        load();
+    }
+
+    public boolean hasOlder() { return hasOlder; }
+    public boolean hasNewer() { return !newerPages.isEmpty(); }
+
+    public String getPageDescription() {
+        if (rows.isEmpty()) return loadedCount + " archived";
+        return "IDs " + rows.get(0).id + " to " + rows.get(rows.size() - 1).id + " of " + loadedCount + " archived";
+    }
+
+    private void load() {
+        loadedCount = auctionManager.getArchivedCount();
+        try {
+            // One extra row tells whether an older page exists
+            List<AuctionArchive.ArchivedAuction> page = auctionManager.getArchivedAuctions(pageStart, PAGE_SIZE + 1);
+            hasOlder = page.size() > PAGE_SIZE;
+            rows = hasOlder ? page.subList(0, PAGE_SIZE) : page;
+        } catch (IOException e) {
+            System.out.println("LOG: Could not read the auction archive: " + e);
+            rows = new ArrayList<>();
+            hasOlder = false;
+        }
+        fireTableDataChanged();
+    }
+
+    @Override
+    public int getRowCount() { return rows.size(); }
+
+    @Override
+    public int getColumnCount() { return COLUMN_NAMES.length; }
+
+    @Override
+    public String getColumnName(int column) { return COLUMN_NAMES[column]; }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        AuctionArchive.ArchivedAuction auction = rows.get(rowIndex);
+        switch (columnIndex) {
+            case 0: return auction.id;
+            case 1: return auction.itemName;
+            case 2: return String.format(Locale.US, "%.2f", auction.startPrice);
+            case 3: return String.format(Locale.US, "%.2f", auction.highestBid);
+            case 4: return auction.getHighestBidderName();
+            case 5: return auction.getStatus();
+            default: throw new IndexOutOfBoundsException("column " + columnIndex);
+        }
+    }
+}
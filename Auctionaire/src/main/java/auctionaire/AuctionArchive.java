@@ -0,0 +1,238 @@
+package auctionaire;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Ended auctions, kept on disk instead of in the live index. Each settled auction is written as a
+ * compact record to an append-only file; a second file maps ids to record offsets, one 8-byte
+ * slot per id at id * 8, holding offset + 1 so an unwritten slot reads as "not archived". A small
+ * LRU cache of decoded records sits in front, so heap use does not grow with the archive.
+ */
+class AuctionArchive {
+    static final int DEFAULT_CACHE_SIZE = 1024;
+    // Index slots read per pass while paging backwards through ids
+    private static final int SCAN_SLOTS = 512;
+
+    private final RecordFile records;
+    private final FileChannel index;
+    private final BidHistoryStore historyStore;
+    private final Map<Integer, ArchivedAuction> cache;
+    private final ExecutorService writer;
+    private volatile int count;
+
+    AuctionArchive(Path file, int cacheSize, BidHistoryStore historyStore, boolean keepExisting) throws IOException {
+        this.records = new RecordFile(file, keepExisting);
+        Path indexFile = Paths.get(file + ".idx");
+        this.index = keepExisting
+            ? FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+            : FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                               StandardOpenOption.TRUNCATE_EXISTING);
+        this.historyStore = historyStore;
+        this.cache = new LinkedHashMap<Integer, ArchivedAuction>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, ArchivedAuction> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        this.count = countSlots();
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "auction-archive");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Like the bid history file, an archive is only consistent with the journal it was written next to
+    static AuctionArchive fromConfig(ServerConfig config, BidHistoryStore historyStore) {
+        if (!config.getBoolean("auction.archive.enabled", true)) {
+            return null;
+        }
+        Path file = Paths.get(config.get("auction.archive.file",
+            Paths.get(config.get("auction.journal.dir", "auction-data"), "archive.dat").toString()));
+        try {
+            return new AuctionArchive(file, config.getInt("auction.archive.cacheSize", DEFAULT_CACHE_SIZE), historyStore,
+                                      config.getBoolean("auction.journal.enabled", true));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open auction archive " + file, e);
+        }
+    }
+
+    /**
+     * Writes an ended auction in the background: bid history first, then the record, then the index
+     * slot, each on disk before the next. onArchived runs last, once the archive alone can serve it.
+     */
+    void archive(Auction auction, Consumer<Auction> onArchived) {
+        writer.execute(() -> {
+            try {
+                if (!contains(auction.getId())) {
+                    if (historyStore != null) historyStore.spillNow(auction);
+                    ArchivedAuction archived = new ArchivedAuction(auction);
+                    ByteArrayOutputStream buffer = new ByteArrayOutputStream(96);
+                    try (DataOutputStream out = new DataOutputStream(buffer)) {
+                        archived.writeTo(out);
+                    }
+                    writeSlot(archived.id, records.append(buffer.toByteArray()) + 1);
+                    synchronized (cache) {
+                        cache.put(archived.id, archived);
+                    }
+                    count++;
+                }
+                onArchived.accept(auction);
+            } catch (IOException e) {
+                // The auction stays live and keeps serving from memory
+                System.out.println("LOG: Could not archive auction " + auction.getId() + ": " + e);
+            }
+        });
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    boolean contains(int id) throws IOException {
+        return readSlot(id) != 0;
+    }
+
+    /** The archived auction with this id, or null if it was never archived. */
+    ArchivedAuction get(int id) throws IOException {
+        synchronized (cache) {
+            ArchivedAuction cached = cache.get(id);
+            if (cached != null) return cached;
+        }
+        long slot = readSlot(id);
+        if (slot == 0) return null;
+        ArchivedAuction archived;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(records.read(slot - 1)))) {
+            archived = ArchivedAuction.readFrom(in);
+        }
+        synchronized (cache) {
+            cache.put(id, archived);
+        }
+        return archived;
+    }
+
+    /** Up to limit archived auctions with ids below beforeId, newest first. */
+    List<ArchivedAuction> page(int beforeId, int limit) throws IOException {
+        List<ArchivedAuction> result = new ArrayList<>(limit);
+        long slots = index.size() / 8;
+        int id = (int) Math.min((long) beforeId - 1, slots - 1);
+        ByteBuffer block = ByteBuffer.allocate(SCAN_SLOTS * 8);
+        while (id > 0 && result.size() < limit) {
+            int from = Math.max(0, id - SCAN_SLOTS + 1);
+            block.clear().limit((id - from + 1) * 8);
+            readFully(block, (long) from * 8);
+            for (int i = id; i >= from && result.size() < limit; i--) {
+                if (block.getLong((i - from) * 8) != 0) result.add(get(i));
+            }
+            id = from - 1;
+        }
+        return result;
+    }
+
+    private long readSlot(int id) throws IOException {
+        if (id <= 0 || (long) id * 8 + 8 > index.size()) return 0;
+        ByteBuffer slot = ByteBuffer.allocate(8);
+        readFully(slot, (long) id * 8);
+        return slot.getLong(0);
+    }
+
+    private void writeSlot(int id, long value) throws IOException {
+        ByteBuffer slot = ByteBuffer.allocate(8).putLong(0, value);
+        while (slot.hasRemaining()) {
+            index.write(slot, (long) id * 8 + slot.position());
+        }
+        index.force(false);
+    }
+
+    private int countSlots() throws IOException {
+        int found = 0;
+        ByteBuffer block = ByteBuffer.allocate(SCAN_SLOTS * 8);
+        long size = index.size() / 8 * 8;
+        for (long position = 0; position < size; position += block.capacity()) {
+            block.clear().limit((int) Math.min(block.capacity(), size - position));
+            readFully(block, position);
+            for (int i = 0; i < block.limit(); i += 8) {
+                if (block.getLong(i) != 0) found++;
+            }
+        }
+        return found;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (index.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Archive index truncated at " + position);
+            }
+        }
+    }
+
+    /** What the admin table and history lookups need of an ended auction. */
+    static final class ArchivedAuction {
+        final int id;
+        final String itemName;
+        final double startPrice;
+        final long endsAtMillis;
+        final double highestBid;
+        // Empty if nobody bid
+        final String highestBidder;
+        final long historyOffset;
+
+        private ArchivedAuction(int id, String itemName, double startPrice, long endsAtMillis,
+                                double highestBid, String highestBidder, long historyOffset) {
+            this.id = id;
+            this.itemName = itemName;
+            this.startPrice = startPrice;
+            this.endsAtMillis = endsAtMillis;
+            this.highestBid = highestBid;
+            this.highestBidder = highestBidder;
+            this.historyOffset = historyOffset;
+        }
+
+        ArchivedAuction(Auction auction) {
+            this(auction.getId(), auction.getItemName(), auction.getStartPrice(), auction.getEndsAtMillis(),
+                 auction.getHighestBid(), auction.getHighestBidder() != null ? auction.getHighestBidder().getName() : "",
+                 auction.getHistoryOffset());
+        }
+
+        // Same wording as Auction for a closed auction
+        String getHighestBidderName() {
+            return highestBidder.isEmpty() ? "None" : highestBidder;
+        }
+
+        String getStatus() {
+            return highestBidder.isEmpty() ? "Ended (No Bids)" : "Won by " + highestBidder;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeInt(id);
+            out.writeUTF(itemName);
+            out.writeDouble(startPrice);
+            out.writeLong(endsAtMillis);
+            out.writeDouble(highestBid);
+            out.writeUTF(highestBidder);
+            out.writeLong(historyOffset);
+        }
+
+        static ArchivedAuction readFrom(DataInputStream in) throws IOException {
+            return new ArchivedAuction(in.readInt(), in.readUTF(), in.readDouble(), in.readLong(),
+                                       in.readDouble(), in.readUTF(), in.readLong());
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package auctionaire;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Ordered views of the open auctions for /api/auctions queries: by id, deadline, current price
+ * and name. Each is a skip list kept up to date as auctions open, take bids and close, so a query
+ * walks one ordering from its cursor and stops after a page instead of sorting per request.
+ */
+class AuctionCatalog {
+    // Entries looked at per request before handing back a cursor, however selective the filters are
+    static final int SCAN_BUDGET = 10_000;
+    private static final int LOCK_STRIPES = 64;
+
+    enum Order {
+        ID("id", Comparator.comparingInt(listing -> listing.id)),
+        ENDING("ending", Comparator.<Listing>comparingLong(listing -> listing.endsAtMillis).thenComparingInt(listing -> listing.id)),
+        PRICE("price", Comparator.<Listing>comparingLong(listing -> listing.priceCents).thenComparingInt(listing -> listing.id)),
+        PRICE_DESC("-price", PRICE.comparator),
+        NAME("name", Comparator.<Listing, String>comparing(listing -> listing.nameKey).thenComparingInt(listing -> listing.id));
+
+        final String param;
+        final Comparator<Listing> comparator;
+
+        Order(String param, Comparator<Listing> comparator) {
+            this.param = param;
+            this.comparator = comparator;
+        }
+
+        static Order fromParam(String param) {
+            for (Order order : values()) {
+                if (order.param.equals(param)) return order;
+            }
+            throw new IllegalArgumentException("Unknown sort: " + param);
+        }
+    }
+
+    private final NavigableSet<Listing> byId = new ConcurrentSkipListSet<>(Order.ID.comparator);
+    private final NavigableSet<Listing> byEnding = new ConcurrentSkipListSet<>(Order.ENDING.comparator);
+    private final NavigableSet<Listing> byPrice = new ConcurrentSkipListSet<>(Order.PRICE.comparator);
+    private final NavigableSet<Listing> byName = new ConcurrentSkipListSet<>(Order.NAME.comparator);
+    // Serialises changes to one auction's listing; its id, deadline and name never change, only its price
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    AuctionCatalog() {
+        for (int i = 0; i < locks.length; i++) locks[i] = new Object();
+    }
+
+    void add(Auction auction) {
+        synchronized (lockFor(auction)) {
+            if (auction.listing != null || !auction.isActive()) return;
+            Listing listing = new Listing(auction);
+            auction.listing = listing;
+            byId.add(listing);
+            byEnding.add(listing);
+            byPrice.add(listing);
+            byName.add(listing);
+        }
+    }
+
+    /** Re-files the auction under its current price; reads the price itself, so racing bids settle on the latest. */
+    void updatePrice(Auction auction) {
+        synchronized (lockFor(auction)) {
+            Listing current = auction.listing;
+            if (current == null) return;
+            long cents = Math.round(auction.getHighestBid() * 100);
+            if (cents == current.priceCents) return;
+            Listing moved = new Listing(current, cents);
+            byPrice.remove(current);
+            auction.listing = moved;
+            byPrice.add(moved);
+        }
+    }
+
+    void remove(Auction auction) {
+        synchronized (lockFor(auction)) {
+            Listing current = auction.listing;
+            if (current == null) return;
+            auction.listing = null;
+            // The other orderings hold the first listing, which compares equal to the current one there
+            byId.remove(current);
+            byEnding.remove(current);
+            byPrice.remove(current);
+            byName.remove(current);
+        }
+    }
+
+    /**
+     * Writes up to query.limit matching open auctions in the query's order:
+     * {"auctions", "next"}, where next is the cursor for the following page or null.
+     */
+    void writePageJson(Query query, JsonWriter out) {
+        NavigableSet<Listing> view = view(query.order);
+        Listing start = null;
+        boolean inclusive = true;
+        // Range filters on the ordering's own key become the starting point rather than a scan
+        if (query.order == Order.PRICE && query.minCents != Long.MIN_VALUE) {
+            start = Listing.probe(query.minCents, Integer.MIN_VALUE);
+        } else if (query.order == Order.PRICE_DESC && query.maxCents != Long.MAX_VALUE) {
+            start = Listing.probe(query.maxCents, Integer.MAX_VALUE);
+        } else if (query.order == Order.NAME && query.prefix != null) {
+            start = Listing.probe(query.prefix, Integer.MIN_VALUE);
+        }
+        if (query.after != null && (start == null || view.comparator().compare(query.after, start) >= 0)) {
+            start = query.after;
+            inclusive = false;
+        }
+        Iterator<Listing> listings = (start == null ? view : view.tailSet(start, inclusive)).iterator();
+
+        out.raw("{\"auctions\":[");
+        int found = 0;
+        int scanned = 0;
+        Listing last = null;
+        boolean more = false;
+        while (listings.hasNext()) {
+            if (scanned++ == SCAN_BUDGET) {
+                more = true;
+                break;
+            }
+            Listing listing = listings.next();
+            if (query.isPastEnd(listing)) break;
+            if (!query.matches(listing) || !listing.auction.isActive()) {
+                if (found == query.limit) continue;
+                // While still filling the page a skipped entry moves the cursor too, so a budget stop resumes here
+                last = listing;
+                continue;
+            }
+            if (found == query.limit) {
+                more = true;
+                break;
+            }
+            if (found++ > 0) out.raw(", ");
+            listing.auction.writeJson(out);
+            last = listing;
+        }
+        out.raw("], \"next\":");
+        if (more && last != null) {
+            out.string(cursor(query.order, last));
+        } else {
+            out.raw("null");
+        }
+        out.raw('}');
+    }
+
+    private NavigableSet<Listing> view(Order order) {
+        switch (order) {
+            case ID: return byId;
+            case ENDING: return byEnding;
+            case PRICE: return byPrice;
+            case PRICE_DESC: return byPrice.descendingSet();
+            case NAME: return byName;
+            default: throw new IllegalArgumentException("order " + order);
+        }
+    }
+
+    private Object lockFor(Auction auction) {
+        return locks[auction.getId() & (LOCK_STRIPES - 1)];
+    }
+
+    // "<id>.<key>": the last entry's position in the ordering, valid even if that auction has since closed
+    static String cursor(Order order, Listing last) {
+        switch (order) {
+            case ID: return Integer.toString(last.id);
+            case ENDING: return last.id + "." + last.endsAtMillis;
+            case PRICE:
+            case PRICE_DESC: return last.id + "." + last.priceCents;
+            case NAME: return last.id + "." + last.nameKey;
+            default: throw new IllegalArgumentException("order " + order);
+        }
+    }
+
+    static Listing parseCursor(Order order, String cursor) {
+        int dot = cursor.indexOf('.');
+        int id = Integer.parseInt(dot < 0 ? cursor : cursor.substring(0, dot));
+        if (order == Order.ID) return Listing.probe(0L, id);
+        if (dot < 0) throw new IllegalArgumentException("Bad cursor: " + cursor);
+        String key = cursor.substring(dot + 1);
+        switch (order) {
+            case ENDING: return new Listing(null, id, Long.parseLong(key), 0, "");
+            case PRICE:
+            case PRICE_DESC: return Listing.probe(Long.parseLong(key), id);
+            case NAME: return Listing.probe(key, id);
+            default: throw new IllegalArgumentException("order " + order);
+        }
+    }
+
+    static String nameKey(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /** What one auction is filed under; replaced, never changed, when its price moves. */
+    static final class Listing {
+        final Auction auction;
+        final int id;
+        final long endsAtMillis;
+        final long priceCents;
+        final String nameKey;
+
+        private Listing(Auction auction, int id, long endsAtMillis, long priceCents, String nameKey) {
+            this.auction = auction;
+            this.id = id;
+            this.endsAtMillis = endsAtMillis;
+            this.priceCents = priceCents;
+            this.nameKey = nameKey;
+        }
+
+        Listing(Auction auction) {
+            this(auction, auction.getId(), auction.getEndsAtMillis(), Math.round(auction.getHighestBid() * 100),
+                 nameKey(auction.getItemName()));
+        }
+
+        private Listing(Listing listing, long priceCents) {
+            this(listing.auction, listing.id, listing.endsAtMillis, priceCents, listing.nameKey);
+        }
+
+        // An auction another process listed, rebuilt from its JSON so pages from several shards can be merged
+        static Listing of(int id, long endsAtMillis, long priceCents, String itemName) {
+            return new Listing(null, id, endsAtMillis, priceCents, nameKey(itemName));
+        }
+
+        // Search keys carry only the fields the ordering compares
+        static Listing probe(long priceCents, int id) {
+            return new Listing(null, id, 0, priceCents, "");
+        }
+
+        static Listing probe(String nameKey, int id) {
+            return new Listing(null, id, 0, 0, nameKey);
+        }
+    }
+
+    /** A parsed /api/auctions query; names are matched case-insensitively. */
+    static final class Query {
+        final Order order;
+        final String prefix;
+        final String contains;
+        final long minCents;
+        final long maxCents;
+        final int limit;
+        final Listing after;
+
+        Query(Order order, String prefix, String contains, double minPrice, double maxPrice, int limit, String cursor) {
+            this.order = order;
+            this.prefix = prefix == null || prefix.isEmpty() ? null : nameKey(prefix);
+            this.contains = contains == null || contains.isEmpty() ? null : nameKey(contains);
+            this.minCents = Double.isNaN(minPrice) ? Long.MIN_VALUE : Math.round(minPrice * 100);
+            this.maxCents = Double.isNaN(maxPrice) ? Long.MAX_VALUE : Math.round(maxPrice * 100);
+            this.limit = limit;
+            this.after = cursor == null || cursor.isEmpty() ? null : parseCursor(order, cursor);
+        }
+
+        boolean matches(Listing listing) {
+            // Only the price ordering re-files auctions as they take bids; the others hold the opening price
+            long priceCents = order == Order.PRICE || order == Order.PRICE_DESC
+                ? listing.priceCents : Math.round(listing.auction.getHighestBid() * 100);
+            return priceCents >= minCents && priceCents <= maxCents
+                && (prefix == null || listing.nameKey.startsWith(prefix))
+                && (contains == null || listing.nameKey.contains(contains));
+        }
+
+        // Once the walk leaves the range its ordering is keyed on, nothing further can match
+        boolean isPastEnd(Listing listing) {
+            switch (order) {
+                case PRICE: return listing.priceCents > maxCents;
+                case PRICE_DESC: return listing.priceCents < minCents;
+                case NAME: return prefix != null && !listing.nameKey.startsWith(prefix);
+                default: return false;
+            }
+        }
+    }
+}
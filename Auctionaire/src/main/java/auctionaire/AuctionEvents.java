@@ -0,0 +1,189 @@
+package auctionaire;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-writer pipeline for what happens to auctions. Producers claim a slot in a bounded ring of
+ * reusable events and fill it in place; one dispatcher thread hands each run of published events
+ * to every handler as a batch, so per-batch work (a journal flush, a file write, one push frame per
+ * auction) is paid once however many events arrived together. A producer only waits when the
+ * dispatcher is a whole ring behind.
+ */
+final class AuctionEvents {
+    static final int DEFAULT_CAPACITY = 1 << 16;
+    // Largest batch handed to the handlers, so a long backlog still frees slots as it drains
+    private static final int MAX_BATCH = 4096;
+    // Producers wake the dispatcher when they publish; the timeout is only a safety net
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    // SETTLED reports the outcome of an ENDED whose winner's wallet is on another shard
+    enum Type { CREATED, BID, STOPPED, ENDED, SETTLED }
+
+    /** One ring slot. Written by its producer before publishing; handlers may only read it during their batch. */
+    static final class Event {
+        Type type;
+        Auction auction;
+        // The bidder for BID, the winner (or null) for ENDED and SETTLED
+        Bidder bidder;
+        double amount;
+        long timeMillis;
+        boolean proxy;
+        // Set by settlement: whether the auction is now settled, and the winner's win sequence number or -1
+        // if nobody paid. SETTLED arrives with winSeq already known.
+        boolean settled;
+        int winSeq;
+
+        private void clear() {
+            auction = null;
+            bidder = null;
+        }
+    }
+
+    interface Handler {
+        /** Runs on the dispatcher thread. Must not block on anything a producer can hold, such as an auction's gate. */
+        void onBatch(Batch batch);
+    }
+
+    /** A run of consecutive events, in publication order. */
+    static final class Batch {
+        private final Event[] slots;
+        private long first;
+        private int size;
+
+        private Batch(Event[] slots) {
+            this.slots = slots;
+        }
+
+        int size() {
+            return size;
+        }
+
+        Event get(int i) {
+            return slots[(int) ((first + i) & (slots.length - 1))];
+        }
+    }
+
+    private final Event[] slots;
+    private final int mask;
+    // published[i] holds the sequence last published into slot i; -1 until the first lap
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long dispatched;
+    private volatile boolean dispatcherIdle;
+    private final AtomicLong producerWaits = new AtomicLong();
+    private final List<Handler> handlers = new CopyOnWriteArrayList<>();
+    private final Batch batch;
+    private final Thread dispatcher;
+
+    AuctionEvents(String name, int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.slots = new Event[size];
+        this.mask = size - 1;
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Event();
+            published.set(i, -1);
+        }
+        this.batch = new Batch(slots);
+        this.dispatcher = new Thread(this::runDispatcher, name);
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /** Handlers see each batch in the order they were added. */
+    void addHandler(Handler handler) {
+        handlers.add(handler);
+    }
+
+    void publish(Type type, Auction auction, Bidder bidder, double amount, long timeMillis, boolean proxy) {
+        publish(type, auction, bidder, amount, timeMillis, proxy, -1);
+    }
+
+    void publish(Type type, Auction auction, Bidder bidder, double amount, long timeMillis, boolean proxy, int winSeq) {
+        long seq = claimed.getAndIncrement();
+        if (seq - slots.length >= dispatched) {
+            awaitSlot(seq);
+        }
+        Event event = slots[(int) (seq & mask)];
+        event.type = type;
+        event.auction = auction;
+        event.bidder = bidder;
+        event.amount = amount;
+        event.timeMillis = timeMillis;
+        event.proxy = proxy;
+        event.settled = false;
+        event.winSeq = winSeq;
+        published.set((int) (seq & mask), seq);
+        if (dispatcherIdle) {
+            LockSupport.unpark(dispatcher);
+        }
+    }
+
+    /** Blocks until every event published before the call has been through all handlers. */
+    void awaitDispatched() {
+        long target = claimed.get();
+        while (dispatched < target) {
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+    }
+
+    /** Events published but not yet through the handlers. */
+    long getBacklog() {
+        return Math.max(0, claimed.get() - dispatched);
+    }
+
+    /** Times a producer found the ring full and had to wait for the dispatcher. */
+    long getProducerWaits() {
+        return producerWaits.get();
+    }
+
+    private void awaitSlot(long seq) {
+        if (Thread.currentThread() == dispatcher) {
+            // A handler publishing into a full ring would wait on itself
+            throw new IllegalStateException("Event ring full on the dispatcher thread");
+        }
+        producerWaits.incrementAndGet();
+        while (seq - slots.length >= dispatched) {
+            LockSupport.unpark(dispatcher);
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+    }
+
+    private void runDispatcher() {
+        long next = 0;
+        while (true) {
+            int count = 0;
+            while (count < MAX_BATCH && published.get((int) ((next + count) & mask)) == next + count) {
+                count++;
+            }
+            if (count == 0) {
+                dispatcherIdle = true;
+                if (published.get((int) (next & mask)) != next) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                dispatcherIdle = false;
+                continue;
+            }
+            batch.first = next;
+            batch.size = count;
+            for (Handler handler : handlers) {
+                try {
+                    handler.onBatch(batch);
+                } catch (RuntimeException e) {
+                    System.out.println("LOG: Auction event handler failed: " + e);
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                batch.get(i).clear();
+            }
+            next += count;
+            dispatched = next;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package auctionaire;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Int-keyed auction index. Ids are handed out sequentially by the manager, so auctions live
+ * in fixed-size chunks addressed directly by id: lookups are lock-free and never box the key.
+ * Removed auctions free their chunk once it empties, so memory follows the auctions still
+ * indexed rather than every id ever issued. A shard issues every stride-th id, and those are
+ * packed into consecutive slots so its chunks stay dense.
+ */
+class AuctionIndex {
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final int firstId;
+    private final int stride;
+    private volatile AtomicReferenceArray<Auction>[] chunks = newDirectory(4);
+    private volatile int maxSlot;
+    // Indexed auctions per chunk, guarded by this index's monitor
+    private int[] chunkCounts = new int[4];
+    private int size;
+
+    AuctionIndex() {
+        this(1, 1);
+    }
+
+    AuctionIndex(int firstId, int stride) {
+        this.firstId = firstId;
+        this.stride = stride;
+    }
+
+    public Auction get(int id) {
+        int slot = slot(id);
+        if (slot <= 0) return null;
+        AtomicReferenceArray<Auction>[] dir = chunks;
+        int chunk = slot >>> CHUNK_BITS;
+        if (chunk >= dir.length || dir[chunk] == null) return null;
+        return dir[chunk].get(slot & CHUNK_MASK);
+    }
+
+    public synchronized void put(Auction auction) {
+        int slot = slot(auction.getId());
+        if (slot <= 0) throw new IllegalArgumentException("Auction " + auction.getId() + " does not belong in this index");
+        int chunk = slot >>> CHUNK_BITS;
+        AtomicReferenceArray<Auction>[] dir = ensureChunk(chunk);
+        if (dir[chunk].getAndSet(slot & CHUNK_MASK, auction) == null) {
+            chunkCounts[chunk]++;
+            size++;
+        }
+        if (slot > maxSlot) maxSlot = slot;
+    }
+
+    /** Drops the auction from the index; a chunk whose ids are all issued and removed is released. */
+    public synchronized void remove(int id) {
+        AtomicReferenceArray<Auction>[] dir = chunks;
+        int slot = slot(id);
+        int chunk = slot >>> CHUNK_BITS;
+        if (slot <= 0 || chunk >= dir.length || dir[chunk] == null) return;
+        if (dir[chunk].getAndSet(slot & CHUNK_MASK, null) == null) return;
+        size--;
+        if (--chunkCounts[chunk] == 0 && chunk < maxSlot >>> CHUNK_BITS) {
+            dir[chunk] = null;
+            chunks = dir;
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /** All indexed auctions in id order; released chunks are skipped without scanning them. */
+    public List<Auction> values() {
+        int max = maxSlot;
+        List<Auction> result = new ArrayList<>(size());
+        AtomicReferenceArray<Auction>[] dir = chunks;
+        for (int chunk = 0; chunk < dir.length && chunk <= max >>> CHUNK_BITS; chunk++) {
+            AtomicReferenceArray<Auction> slots = dir[chunk];
+            if (slots == null) continue;
+            for (int i = 0; i < CHUNK_SIZE; i++) {
+                Auction auction = slots.get(i);
+                if (auction != null) result.add(auction);
+            }
+        }
+        return result;
+    }
+
+    // Slot 1 holds firstId; 0 (never a slot) for ids this index does not hold
+    private int slot(int id) {
+        int offset = id - firstId;
+        if (offset < 0 || offset % stride != 0) return 0;
+        return offset / stride + 1;
+    }
+
+    private synchronized AtomicReferenceArray<Auction>[] ensureChunk(int chunk) {
+        AtomicReferenceArray<Auction>[] dir = chunks;
+        if (chunk >= dir.length) {
+            AtomicReferenceArray<Auction>[] grown = newDirectory(Math.max(dir.length * 2, chunk + 1));
+            System.arraycopy(dir, 0, grown, 0, dir.length);
+            dir = grown;
+            chunkCounts = Arrays.copyOf(chunkCounts, grown.length);
+        }
+        if (dir[chunk] == null) {
+            dir[chunk] = new AtomicReferenceArray<>(CHUNK_SIZE);
+        }
+        chunks = dir;
+        return dir;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static AtomicReferenceArray<Auction>[] newDirectory(int size) {
+        return new AtomicReferenceArray[size];
+    }
+}
@@ -0,0 +1,409 @@
+package auctionaire;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary journal of auction state changes with group commit.
+ *
+ * Appenders copy their record into one of several buffers and return a sequence number; one
+ * flusher thread takes whatever has accumulated in all of them, writes it, forces it once and
+ * wakes everyone it covered. An auction's records always go to the same buffer, so they reach
+ * disk in the order they were appended, while appenders on different auctions do not wait for
+ * each other. Settlements and wins share a buffer of their own that is written last in each
+ * batch, after the bids that decided them. Every record has the same layout: length, type, id,
+ * amount, time, flag, text, CRC32. Periodic checkpoints write a state snapshot and drop the
+ * segments it covers, which bounds recovery.
+ */
+class AuctionJournal {
+    static final byte CREATE = 1, BID = 2, STOP = 3, SETTLE = 4, PROXY = 5;
+    // On a bidder's home shard: a charge for an auction that was won on another shard
+    static final byte WIN = 6;
+
+    private static final int STRIPE_BITS = 3;
+    // Per buffer; room for the largest record (a 64 KiB text) with plenty to spare
+    private static final int BUFFER_SIZE = 1 << 17;
+    private static final int FIXED_PAYLOAD = 1 + 4 + 8 + 8 + 1 + 2;
+    private static final int SNAPSHOT_MAGIC = 0x41554354;
+    private static final int GATE_STRIPES = 64;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+
+    private final Path dir;
+    private final boolean syncAcks;
+    private final long checkpointSeconds;
+    private final ReentrantReadWriteLock[] gates = new ReentrantReadWriteLock[GATE_STRIPES];
+
+    // Auction records by a hash of the id, then the settlement buffer, which is written last
+    private final Stripe[] stripes = new Stripe[(1 << STRIPE_BITS) + 1];
+    private final Stripe settlements;
+    private final ByteBuffer[] batch = new ByteBuffer[stripes.length];
+
+    // Records appended now belong to this flush; only the flusher moves it on
+    private volatile long generation = 1;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private volatile Thread flusher;
+
+    // Guards durableSeq, channel and segmentIndex; acknowledgements wait on it
+    private final Object lock = new Object();
+    private long durableSeq;
+    // Set for good once a write fails; from then on nothing is acknowledged as durable
+    private volatile boolean failed;
+    private FileChannel channel;
+    private long segmentIndex;
+
+    AuctionJournal(Path dir, boolean syncAcks, long checkpointSeconds) {
+        this.dir = dir;
+        this.syncAcks = syncAcks;
+        this.checkpointSeconds = checkpointSeconds;
+        for (int i = 0; i < GATE_STRIPES; i++) {
+            gates[i] = new ReentrantReadWriteLock();
+        }
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+        settlements = stripes[stripes.length - 1];
+    }
+
+    /** One buffer being filled and a spare the flusher swaps in when it takes the full one. */
+    private static final class Stripe {
+        final CRC32 crc = new CRC32();
+        ByteBuffer active = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        ByteBuffer spare = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    /** Journal configured from the auction.journal.* settings, or null when disabled. */
+    static AuctionJournal fromConfig(ServerConfig config) {
+        if (!config.getBoolean("auction.journal.enabled", true)) {
+            return null;
+        }
+        return new AuctionJournal(
+            Paths.get(config.get("auction.journal.dir", "auction-data")),
+            config.getBoolean("auction.journal.syncAcks", true),
+            config.getLong("auction.journal.checkpointSeconds", 60));
+    }
+
+    // --- Gates: mutators hold a shared stripe while they change state and append ---
+
+    Lock gate(int auctionId) {
+        return gates[auctionId & (GATE_STRIPES - 1)].readLock();
+    }
+
+    void lockAllGates() {
+        for (ReentrantReadWriteLock gate : gates) gate.writeLock().lock();
+    }
+
+    void unlockAllGates() {
+        for (int i = gates.length - 1; i >= 0; i--) gates[i].writeLock().unlock();
+    }
+
+    // --- Appending ---
+
+    /**
+     * Adds a record and returns the sequence number to pass to awaitDurable. Records for one
+     * auction must be appended in the order they happened; the auction emits its changes one at a time.
+     */
+    long append(byte type, int id, double amount, long time, boolean flag, String text) {
+        byte[] textBytes = text != null ? text.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        if (textBytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("Journal text field too long: " + textBytes.length + " bytes");
+        }
+        int payloadLength = FIXED_PAYLOAD + textBytes.length;
+        int recordLength = 4 + payloadLength + 4;
+        // Ids are handed out in steps of the shard count, so they are hashed before picking a buffer
+        Stripe stripe = type == SETTLE || type == WIN ? settlements : stripes[(id * 0x9E3779B9) >>> (32 - STRIPE_BITS)];
+        long seq;
+        synchronized (stripe) {
+            while (stripe.active.remaining() < recordLength && !failed) {
+                requestFlush();
+                waitOn(stripe);
+            }
+            // The caller finds out from awaitDurable; the record is dropped
+            if (failed) return generation;
+            ByteBuffer active = stripe.active;
+            int start = active.position();
+            active.putInt(payloadLength)
+                  .put(type).putInt(id).putDouble(amount).putLong(time)
+                  .put((byte) (flag ? 1 : 0))
+                  .putShort((short) textBytes.length).put(textBytes);
+            stripe.crc.reset();
+            ByteBuffer payload = active.duplicate();
+            payload.position(start + 4).limit(start + 4 + payloadLength);
+            stripe.crc.update(payload);
+            active.putInt((int) stripe.crc.getValue());
+            // Read after the record is in: the flusher cannot take this buffer until we let go of it
+            seq = generation;
+        }
+        requestFlush();
+        return seq;
+    }
+
+    private void requestFlush() {
+        if (!flushRequested.get() && flushRequested.compareAndSet(false, true)) {
+            LockSupport.unpark(flusher);
+        }
+    }
+
+    /**
+     * Blocks until the record with the given sequence is on disk, if acknowledgements are
+     * synchronous. False if the journal has failed, in which case the record may never get there
+     * and the change must not be acknowledged.
+     */
+    boolean awaitDurable(long seq) {
+        if (!syncAcks) return !failed;
+        synchronized (lock) {
+            while (durableSeq < seq && !failed) {
+                waitOn(lock);
+            }
+            return durableSeq >= seq;
+        }
+    }
+
+    /** Whether a write has failed; the server then takes no more changes until it is restarted. */
+    boolean isFailed() {
+        return failed;
+    }
+
+    private void runFlusher() {
+        while (true) {
+            while (!flushRequested.get()) {
+                LockSupport.park(this);
+            }
+            flushRequested.set(false);
+            // Everything appended from here on is in the next flush. An appender that read the old
+            // generation still held its buffer, so its record is among those taken below.
+            long batchSeq = generation;
+            generation = batchSeq + 1;
+            FileChannel target;
+            synchronized (lock) {
+                target = channel;
+            }
+            // Settlements are taken first, so any bid that came before one is taken with it
+            takeBuffer(settlements, batch.length - 1);
+            for (int i = 0; i < stripes.length - 1; i++) {
+                takeBuffer(stripes[i], i);
+            }
+            try {
+                for (ByteBuffer buffer : batch) buffer.flip();
+                long remaining = 0;
+                for (ByteBuffer buffer : batch) remaining += buffer.remaining();
+                while (remaining > 0) {
+                    remaining -= target.write(batch);
+                }
+                target.force(false);
+            } catch (IOException e) {
+                System.out.println("LOG: Journal write failed; bids, new auctions and settlements are refused until restart: " + e);
+                failed = true;
+                for (Stripe stripe : stripes) {
+                    synchronized (stripe) {
+                        stripe.notifyAll();
+                    }
+                }
+                synchronized (lock) {
+                    lock.notifyAll();
+                }
+                return;
+            } finally {
+                for (ByteBuffer buffer : batch) buffer.clear();
+            }
+            synchronized (lock) {
+                durableSeq = batchSeq;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    // Swaps in the stripe's cleared spare and waits the full buffer's appenders, if any, were blocked on
+    private void takeBuffer(Stripe stripe, int slot) {
+        synchronized (stripe) {
+            ByteBuffer filled = stripe.active;
+            stripe.active = stripe.spare;
+            stripe.spare = filled;
+            batch[slot] = filled;
+            stripe.notifyAll();
+        }
+    }
+
+    private static void waitOn(Object monitor) {
+        try {
+            monitor.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting on the journal", e);
+        }
+    }
+
+    // --- Segments and recovery ---
+
+    /** Starts a fresh segment after everything on disk and after the snapshot, then starts the flusher. */
+    void open(long sealedSegment) throws IOException {
+        Files.createDirectories(dir);
+        List<Long> existing = segmentIndexes();
+        synchronized (lock) {
+            long last = existing.isEmpty() ? sealedSegment : Math.max(sealedSegment, existing.get(existing.size() - 1));
+            segmentIndex = last + 1;
+            channel = openSegment(segmentIndex);
+        }
+        Thread thread = new Thread(this::runFlusher, "journal-flusher");
+        thread.setDaemon(true);
+        flusher = thread;
+        thread.start();
+        // Anything appended before the flusher existed
+        requestFlush();
+    }
+
+    /**
+     * Waits for pending records to reach disk and switches to a new segment. Callers hold all
+     * gates, so nothing is appended meanwhile. Returns the index of the sealed segment.
+     */
+    long rotate() throws IOException {
+        long pending = generation;
+        requestFlush();
+        synchronized (lock) {
+            while (durableSeq < pending && !failed) {
+                waitOn(lock);
+            }
+            if (failed) throw new IOException("Journal is in a failed state");
+            long sealed = segmentIndex;
+            channel.close();
+            segmentIndex++;
+            channel = openSegment(segmentIndex);
+            return sealed;
+        }
+    }
+
+    /** Feeds every intact record after the given segment to the handler, truncating a torn tail. */
+    void replay(long afterSegment, RecordHandler handler) throws IOException {
+        if (!Files.isDirectory(dir)) return;
+        for (long index : segmentIndexes()) {
+            if (index <= afterSegment) continue;
+            Path path = segmentPath(index);
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+            CRC32 check = new CRC32();
+            int good = 0;
+            while (buffer.remaining() >= 4) {
+                int payloadLength = buffer.getInt();
+                if (payloadLength < FIXED_PAYLOAD || buffer.remaining() < payloadLength + 4) break;
+                int payloadStart = buffer.position();
+                check.reset();
+                check.update(buffer.array(), payloadStart, payloadLength);
+                buffer.position(payloadStart + payloadLength);
+                if (buffer.getInt() != (int) check.getValue()) break;
+
+                buffer.position(payloadStart);
+                byte type = buffer.get();
+                int id = buffer.getInt();
+                double amount = buffer.getDouble();
+                long time = buffer.getLong();
+                boolean flag = buffer.get() != 0;
+                int textLength = buffer.getShort() & 0xFFFF;
+                String text = new String(buffer.array(), buffer.position(), textLength, StandardCharsets.UTF_8);
+                buffer.position(payloadStart + payloadLength + 4);
+                handler.apply(type, id, amount, time, flag, text);
+                good = buffer.position();
+            }
+            if (good < buffer.limit()) {
+                System.out.println("LOG: Truncating torn journal tail in " + path.getFileName() + " at byte " + good);
+                try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    ch.truncate(good);
+                }
+            }
+        }
+    }
+
+    // --- Checkpoints ---
+
+    void startCheckpoints(Runnable checkpoint) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "journal-checkpoint");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(checkpoint, checkpointSeconds, checkpointSeconds, TimeUnit.SECONDS);
+    }
+
+    /** Atomically replaces the snapshot and deletes the segments it covers. */
+    void writeSnapshot(long sealedSegment, byte[] state) throws IOException {
+        ByteBuffer file = ByteBuffer.allocate(4 + 8 + 4 + state.length + 4);
+        CRC32 check = new CRC32();
+        check.update(state);
+        file.putInt(SNAPSHOT_MAGIC).putLong(sealedSegment).putInt(state.length).put(state).putInt((int) check.getValue());
+        file.flip();
+        Path tmp = dir.resolve(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (file.hasRemaining()) ch.write(file);
+            ch.force(true);
+        }
+        Files.move(tmp, dir.resolve(SNAPSHOT_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        for (long index : segmentIndexes()) {
+            if (index <= sealedSegment) Files.deleteIfExists(segmentPath(index));
+        }
+    }
+
+    /** The latest snapshot, or null if there is none yet. */
+    Snapshot readSnapshot() throws IOException {
+        Path path = dir.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(path)) return null;
+        ByteBuffer file = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (file.remaining() < 16 || file.getInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("Unrecognised snapshot file " + path);
+        }
+        long sealedSegment = file.getLong();
+        byte[] state = new byte[file.getInt()];
+        file.get(state);
+        CRC32 check = new CRC32();
+        check.update(state);
+        if (file.getInt() != (int) check.getValue()) {
+            throw new IOException("Snapshot checksum mismatch in " + path);
+        }
+        return new Snapshot(sealedSegment, state);
+    }
+
+    private FileChannel openSegment(long index) throws IOException {
+        return FileChannel.open(segmentPath(index), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private Path segmentPath(long index) {
+        return dir.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    private List<Long> segmentIndexes() throws IOException {
+        List<Long> indexes = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(p -> p.getFileName().toString())
+                 .filter(n -> n.startsWith(SEGMENT_PREFIX) && n.endsWith(SEGMENT_SUFFIX))
+                 .forEach(n -> indexes.add(Long.parseLong(n.substring(SEGMENT_PREFIX.length(), n.length() - SEGMENT_SUFFIX.length()))));
+        }
+        indexes.sort(null);
+        return indexes;
+    }
+
+    interface RecordHandler {
+        void apply(byte type, int id, double amount, long time, boolean flag, String text);
+    }
+
+    static final class Snapshot {
+        final long sealedSegment;
+        final byte[] state;
+
+        Snapshot(long sealedSegment, byte[] state) {
+            this.sealedSegment = sealedSegment;
+            this.state = state;
+        }
+    }
+}
@@ -0,0 +1,2296 @@
+package auctionaire;
+
+import com.sun.net.httpserver.*;
+import javax.swing.*;
+import java.awt.GraphicsEnvironment;
+import java.io.*;
+import java.net.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+public class AuctionServer {
+    private static final ServerConfig config = ServerConfig.load();
+    // Null on a router, which holds no auctions of its own
+    private static AuctionManager auctionManager;
+    private static Metrics metrics;
+    private static AdminGUI adminGUI;
+
+    public static void main(String[] args) throws IOException {
+        ShardMap shards = ShardMap.fromConfig(config);
+        ShardRouter router = null;
+        if (shards.role == ShardMap.Role.ROUTER) {
+            router = new ShardRouter(shards);
+            metrics = router.getMetrics();
+        } else {
+            BidHistoryStore historyStore = BidHistoryStore.fromConfig(config);
+            auctionManager = new AuctionManager(AuctionJournal.fromConfig(config), historyStore,
+                                                AuctionArchive.fromConfig(config, historyStore), AuditLog.fromConfig(config), shards);
+            metrics = auctionManager.getMetrics();
+            auctionManager.recover();
+        }
+        // Without the admin panel, auctions are opened through POST /internal/auctions instead
+        boolean headless = router != null || config.getBoolean("server.headless", GraphicsEnvironment.isHeadless());
+        if (router == null && !headless) {
+            SwingUtilities.invokeLater(() -> adminGUI = new AdminGUI(auctionManager));
+        }
+
+        int port = config.getInt("server.port", 8081);
+        int backlog = config.getInt("server.backlog", 1024);
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), backlog);
+
+        // Each endpoint class gets its own in-flight budget so a bid rush cannot starve page loads
+        Semaphore staticLimit = admissionLimit("static", 256);
+        Semaphore readLimit = admissionLimit("reads", 1024);
+        Semaphore bidLimit = admissionLimit("bids", 512);
+        Semaphore streamLimit = admissionLimit("streams", 10000);
+
+        String mode = config.get("server.executor", "virtual");
+        Executor virtual = "virtual".equalsIgnoreCase(mode) ? virtualThreads() : null;
+        // Streams hold a thread for as long as the browser stays, so they get threads of their own
+        Executor streams = virtual != null ? virtual : streamPool(streamLimit.availablePermits());
+
+        server.createContext("/", new LimitedHandler(new FileHandler(StaticAssets.fromConfig(config)), staticLimit));
+        if (router != null) {
+            router.registerHandlers(server, readLimit, bidLimit, streamLimit, streams);
+        } else {
+            server.createContext("/api/auctions", new LimitedHandler(new AuctionsApiHandler(), readLimit));
+            server.createContext("/api/auctions/", new LimitedHandler(new BidHistoryApiHandler(), readLimit));
+            server.createContext("/api/bid", new LimitedHandler(new BidApiHandler(), bidLimit));
+            server.createContext("/api/bids", new LimitedHandler(new BatchBidApiHandler(), bidLimit));
+            server.createContext("/api/my-wins", new LimitedHandler(new WinsApiHandler(), readLimit));
+            server.createContext("/api/user-status", new LimitedHandler(new UserStatusApiHandler(), readLimit));
+            server.createContext("/api/stream", new StreamHandler(new StreamApiHandler(), streamLimit, streams));
+            server.createContext("/api/metrics", new LimitedHandler(new MetricsApiHandler(), readLimit));
+            // Called by the router, the other shards and load tools only, so each answers 403 to anyone else
+            if (headless || shards.role == ShardMap.Role.SHARD) {
+                server.createContext("/internal/auctions", new InternalHandler(new LimitedHandler(new CreateAuctionHandler(), bidLimit), shards));
+            }
+            if (shards.role == ShardMap.Role.SHARD) {
+                server.createContext("/internal/charge", new InternalHandler(new LimitedHandler(new ChargeHandler(), bidLimit), shards));
+                server.createContext("/internal/events", new InternalHandler(new StreamHandler(new EventsFeedHandler(), streamLimit, streams), shards));
+            }
+        }
+
+        int queued = staticLimit.availablePermits() + readLimit.availablePermits() + bidLimit.availablePermits();
+        server.setExecutor(createExecutor(mode, virtual, queued));
+        server.start();
+
+        switch (shards.role) {
+            case ROUTER:
+                router.start();
+                System.out.println("Router started on port " + port + " in front of " + shards.getShardCount() + " shards.");
+                break;
+            case SHARD:
+                System.out.println("Shard " + shards.index + " of " + shards.getShardCount() + " started on port " + port + ".");
+                break;
+            default:
+                System.out.println("Server started on port " + port + (headless ? " without the admin panel" : "")
+                                   + ". Bidders can now connect.");
+        }
+    }
+
+    // Reads server.limit.<name> and exposes the permits in use as an in-flight gauge
+    private static Semaphore admissionLimit(String name, int defaultPermits) {
+        int permits = config.getInt("server.limit." + name, defaultPermits);
+        Semaphore limit = new Semaphore(permits);
+        metrics.gauge("auctionaire_http_in_flight", "limit=\"" + name + "\"",
+                "Requests being served, by admission limit", () -> permits - limit.availablePermits());
+        return limit;
+    }
+
+    // Virtual threads where the runtime has them (Java 21+), or null
+    private static Executor virtualThreads() {
+        try {
+            return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    // Before Java 21, "virtual" falls back to the fixed pool. That pool has server.threads threads,
+    // and at most as many requests wait for one as the static, read and bid limits add up to; past
+    // that a request is answered 503 straight away instead of queueing behind the rest.
+    private static Executor createExecutor(String mode, Executor virtual, int queued) {
+        if ("virtual".equalsIgnoreCase(mode)) {
+            if (virtual != null) return virtual;
+            System.out.println("LOG: Virtual threads are not available on this JVM, using the fixed pool.");
+        } else if ("cached".equalsIgnoreCase(mode)) {
+            return Executors.newCachedThreadPool();
+        } else if (!"fixed".equalsIgnoreCase(mode)) {
+            throw new IllegalArgumentException("Unknown server.executor mode: " + mode);
+        }
+        int threads = config.getInt("server.threads", Runtime.getRuntime().availableProcessors() * 8);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                                                         new ArrayBlockingQueue<>(queued), new ShedPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    // A thread per open stream, made when the stream opens and dropped a minute after it closes;
+    // the stream limit's permits keep the count within server.limit.streams
+    private static Executor streamPool(int streams) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(streams, streams, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Runs a request the pool has no room for on the server's listener thread, marked so that the
+     * admission check answers 503 without handling it. Turning it away costs reading its headers.
+     */
+    static final class ShedPolicy implements RejectedExecutionHandler {
+        private static final ThreadLocal<Boolean> shedding = new ThreadLocal<>();
+
+        static boolean isShedding() {
+            return shedding.get() != null;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor pool) {
+            shedding.set(Boolean.TRUE);
+            try {
+                task.run();
+            } finally {
+                shedding.remove();
+            }
+        }
+    }
+
+    static void sendUnavailable(HttpExchange exchange, Metrics.Endpoint metrics) throws IOException {
+        metrics.rejected.increment();
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        exchange.sendResponseHeaders(503, -1);
+        exchange.close();
+    }
+
+    // Sheds load with an immediate 503 once an endpoint class has too many requests in flight,
+    // and records how long the delegate takes
+    static class LimitedHandler implements HttpHandler {
+        private final HttpHandler delegate;
+        private final Semaphore inFlight;
+        private final Metrics.Endpoint metrics;
+
+        LimitedHandler(HttpHandler delegate, Semaphore inFlight) {
+            this(delegate, inFlight, true);
+        }
+
+        LimitedHandler(HttpHandler delegate, Semaphore inFlight, boolean timed) {
+            this.delegate = delegate;
+            this.inFlight = inFlight;
+            this.metrics = AuctionServer.metrics.endpoint(delegate.getClass().getSimpleName(), timed);
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (ShedPolicy.isShedding() || !inFlight.tryAcquire()) {
+                sendUnavailable(exchange, metrics);
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                delegate.handle(exchange);
+            } finally {
+                inFlight.release();
+                if (metrics.timed) {
+                    metrics.latency.record(System.nanoTime() - start);
+                }
+            }
+        }
+    }
+
+    // Admits a stream against the stream limit and moves it onto the stream threads, so the
+    // request thread is free again as soon as the stream is under way
+    static class StreamHandler implements HttpHandler {
+        private final HttpHandler delegate;
+        private final Semaphore open;
+        private final Executor streams;
+        private final Metrics.Endpoint metrics;
+
+        StreamHandler(HttpHandler delegate, Semaphore open, Executor streams) {
+            this.delegate = delegate;
+            this.open = open;
+            this.streams = streams;
+            this.metrics = AuctionServer.metrics.endpoint(delegate.getClass().getSimpleName(), false);
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (ShedPolicy.isShedding() || !open.tryAcquire()) {
+                sendUnavailable(exchange, metrics);
+                return;
+            }
+            try {
+                streams.execute(() -> {
+                    try {
+                        delegate.handle(exchange);
+                    } catch (IOException e) {
+                        // The client went away
+                    } finally {
+                        open.release();
+                        exchange.close();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                open.release();
+                sendUnavailable(exchange, metrics);
+            }
+        }
+    }
+
+    // Turns away /internal callers that are not part of the cluster before they cost an admission permit
+    static class InternalHandler implements HttpHandler {
+        private final HttpHandler delegate;
+        private final ShardMap shards;
+
+        InternalHandler(HttpHandler delegate, ShardMap shards) {
+            this.delegate = delegate;
+            this.shards = shards;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!shards.admits(exchange)) {
+                exchange.sendResponseHeaders(403, -1);
+                exchange.close();
+                return;
+            }
+            delegate.handle(exchange);
+        }
+    }
+
+    // --- HTTP Handlers for Bidders ---
+    // Serves the bidder pages from memory; 304 on a matching ETag, gzip when the browser accepts it
+    static class FileHandler implements HttpHandler {
+        private static final byte[] NOT_FOUND = "404 Not Found".getBytes(StandardCharsets.UTF_8);
+        private final StaticAssets assets;
+
+        FileHandler(StaticAssets assets) { this.assets = assets; }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            StaticAssets.Asset asset = assets.get(exchange.getRequestURI().getPath());
+            if (asset == null) {
+                exchange.sendResponseHeaders(404, NOT_FOUND.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(NOT_FOUND);
+                }
+                return;
+            }
+            Headers headers = exchange.getResponseHeaders();
+            headers.set("ETag", asset.etag);
+            headers.set("Cache-Control", asset.cacheControl);
+            if (asset.etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            headers.set("Content-Type", asset.contentType);
+            boolean head = "HEAD".equalsIgnoreCase(exchange.getRequestMethod());
+            if (asset.file != null) {
+                // Too large to keep in memory: let the channel move the bytes instead of a copy loop
+                exchange.sendResponseHeaders(200, head ? -1 : asset.size);
+                if (head) {
+                    exchange.close();
+                    return;
+                }
+                try (OutputStream os = exchange.getResponseBody();
+                     FileChannel channel = FileChannel.open(asset.file, StandardOpenOption.READ)) {
+                    WritableByteChannel out = Channels.newChannel(os);
+                    long position = 0;
+                    while (position < asset.size) {
+                        long sent = channel.transferTo(position, asset.size - position, out);
+                        if (sent <= 0) break;
+                        position += sent;
+                    }
+                }
+                return;
+            }
+            byte[] body = asset.bytes;
+            if (asset.gzip != null) {
+                headers.set("Vary", "Accept-Encoding");
+                String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                    headers.set("Content-Encoding", "gzip");
+                    body = asset.gzip;
+                }
+            }
+            if (head) {
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        }
+    }
+
+    // GET /api/auctions: every open auction, or with any of q, prefix, minPrice, maxPrice, sort, limit or
+    // cursor, one page of the matching ones served from the catalog's indexes
+    static class AuctionsApiHandler implements HttpHandler {
+        private static final String[] QUERY_PARAMS = {"q", "prefix", "minPrice", "maxPrice", "sort", "limit", "cursor"};
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try (FormCodec.Form params = FormCodec.readQuery(exchange.getRequestURI().getRawQuery())) {
+                if (rejectForm(exchange, params)) return;
+                if (isQuery(params)) {
+                    handleQuery(exchange, params);
+                    return;
+                }
+            }
+            sendSnapshot(exchange, auctionManager.getActiveAuctionsSnapshot());
+        }
+
+        // 304 when the browser already has this version, gzip when it accepts it
+        static void sendSnapshot(HttpExchange exchange, AuctionManager.AuctionsSnapshot snapshot) throws IOException {
+            Headers headers = exchange.getResponseHeaders();
+            headers.set("ETag", snapshot.etag);
+            headers.set("Cache-Control", "no-cache");
+            headers.set("Vary", "Accept-Encoding");
+            headers.set("X-Server-Time", Long.toString(System.currentTimeMillis()));
+            if (snapshot.etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            headers.set("Content-Type", "application/json; charset=UTF-8");
+            byte[] body = snapshot.json;
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                headers.set("Content-Encoding", "gzip");
+                body = snapshot.gzip;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        }
+
+        static boolean isQuery(FormCodec.Form params) {
+            for (String param : QUERY_PARAMS) {
+                if (params.has(param)) return true;
+            }
+            return false;
+        }
+
+        // Throws IllegalArgumentException (NumberFormatException included) for a malformed parameter
+        static AuctionCatalog.Query parseQuery(FormCodec.Form params) {
+            String sort = params.getString("sort");
+            int limit = params.getInt("limit", AuctionManager.AUCTION_PAGE_SIZE);
+            return new AuctionCatalog.Query(
+                sort == null ? AuctionCatalog.Order.ID : AuctionCatalog.Order.fromParam(sort),
+                params.getString("prefix"), params.getString("q"),
+                params.getDouble("minPrice", Double.NaN), params.getDouble("maxPrice", Double.NaN),
+                Math.min(Math.max(limit, 1), AuctionManager.MAX_AUCTION_PAGE_SIZE), params.getString("cursor"));
+        }
+
+        private static void handleQuery(HttpExchange exchange, FormCodec.Form params) throws IOException {
+            AuctionCatalog.Query query;
+            try {
+                query = parseQuery(params);
+            } catch (IllegalArgumentException e) {
+                sendTextResponse(exchange, 400, "Error: " + e.getMessage());
+                return;
+            }
+            exchange.getResponseHeaders().set("X-Server-Time", Long.toString(System.currentTimeMillis()));
+            try (JsonWriter json = JsonWriter.acquire()) {
+                auctionManager.writeAuctionPageJson(query, json);
+                sendJsonResponse(exchange, json);
+            }
+        }
+    }
+    
+    // GET /api/auctions/{id}/bids?before=<seq>&limit=<n>: the auction's bid history, newest first
+    static class BidHistoryApiHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String[] parts = exchange.getRequestURI().getPath().split("/");
+            // "", "api", "auctions", id, "bids"
+            if (parts.length != 5 || !"bids".equals(parts[4])) {
+                sendTextResponse(exchange, 404, "404 Not Found");
+                return;
+            }
+            int auctionId;
+            long before;
+            int limit;
+            try (FormCodec.Form query = FormCodec.readQuery(exchange.getRequestURI().getRawQuery())) {
+                if (rejectForm(exchange, query)) return;
+                auctionId = Integer.parseInt(parts[3]);
+                before = query.getLong("before", Long.MAX_VALUE);
+                limit = query.getInt("limit", BID_PAGE_SIZE);
+            } catch (NumberFormatException e) {
+                sendTextResponse(exchange, 400, "Error: id, before and limit must be numbers.");
+                return;
+            }
+            try (JsonWriter json = JsonWriter.acquire()) {
+                if (!auctionManager.writeBidHistoryJson(auctionId, before, Math.min(Math.max(limit, 1), MAX_BID_PAGE_SIZE), json)) {
+                    sendTextResponse(exchange, 404, "Error: Auction not found.");
+                    return;
+                }
+                sendJsonResponse(exchange, json);
+            }
+        }
+    }
+
+    // **FIXED:** Handler for user status now uses robust parsing
+    static class UserStatusApiHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String bidderName;
+            try (FormCodec.Form query = FormCodec.readQuery(exchange.getRequestURI().getRawQuery())) {
+                if (rejectForm(exchange, query)) return;
+                bidderName = query.getString("bidderName");
+            }
+            try (JsonWriter json = JsonWriter.acquire()) {
+                if (bidderName != null) {
+                    auctionManager.writeBidderStatusJson(bidderName, json);
+                } else {
+                    json.raw("{}");
+                }
+                sendJsonResponse(exchange, json);
+            }
+        }
+    }
+
+
+    // **FIXED:** Handler for won items now uses robust parsing
+    static class WinsApiHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String bidderName;
+            int since = 0, limit = 0;
+            try (FormCodec.Form query = FormCodec.readQuery(exchange.getRequestURI().getRawQuery())) {
+                if (rejectForm(exchange, query)) return;
+                bidderName = query.getString("bidderName");
+                if (bidderName != null) {
+                    // since is the version from the previous page (its "next"); only newer wins come back
+                    since = query.getInt("since", 0);
+                    limit = query.getInt("limit", AuctionManager.WIN_PAGE_SIZE);
+                }
+            } catch (NumberFormatException e) {
+                sendTextResponse(exchange, 400, "Error: since and limit must be numbers.");
+                return;
+            }
+            try (JsonWriter json = JsonWriter.acquire()) {
+                if (bidderName != null) {
+                    limit = Math.min(Math.max(limit, 1), AuctionManager.MAX_WIN_PAGE_SIZE);
+                    auctionManager.writeWonAuctionsJson(bidderName, since, limit, json);
+                } else {
+                    json.raw("{\"version\":0, \"next\":0, \"wins\":[]}");
+                }
+                sendJsonResponse(exchange, json);
+            }
+        }
+    }
+
+    static class MetricsApiHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            byte[] response = metrics.render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=UTF-8");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(response);
+            }
+        }
+    }
+
+    // Pushes auction, wallet and win deltas to one browser as Server-Sent Events
+    static class StreamApiHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String bidderName;
+            try (FormCodec.Form query = FormCodec.readQuery(exchange.getRequestURI().getRawQuery())) {
+                if (rejectForm(exchange, query)) return;
+                bidderName = query.getString("bidderName");
+            }
+            if (bidderName == null || bidderName.trim().isEmpty()) {
+                exchange.sendResponseHeaders(400, -1);
+                exchange.close();
+                return;
+            }
+            bidderName = bidderName.trim();
+            PushStream stream = auctionManager.getPushStream();
+            PushStream.Subscriber subscriber = stream.subscribe(bidderName);
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=UTF-8");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream os = exchange.getResponseBody()) {
+                // Handed back before the stream settles in to wait for frames
+                try (JsonWriter snapshot = JsonWriter.acquire()) {
+                    snapshot.raw("event: snapshot\ndata: ");
+                    auctionManager.writeStreamSnapshotJson(bidderName, snapshot);
+                    snapshot.raw("\n\n").writeTo(os);
+                }
+                os.flush();
+                while (!subscriber.isClosed()) {
+                    byte[] frame = subscriber.poll(15, TimeUnit.SECONDS);
+                    // A comment line doubles as a heartbeat and as a disconnect probe
+                    os.write(frame != null ? frame : HEARTBEAT);
+                    os.flush();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                // The browser went away; nothing left to send
+            } finally {
+                stream.unsubscribe(subscriber);
+            }
+        }
+    }
+
+    // POST /internal/auctions with itemName, durationSeconds and startPrice: opens an auction on this shard
+    // and answers with its id; the router spreads new auctions over the shards this way
+    static class CreateAuctionHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                exchange.close();
+                return;
+            }
+            String itemName;
+            int durationSeconds;
+            double startPrice;
+            try (FormCodec.Form form = FormCodec.readBody(exchange.getRequestBody(), MAX_FORM_BYTES)) {
+                if (rejectForm(exchange, form)) return;
+                itemName = form.getString("itemName");
+                durationSeconds = form.getInt("durationSeconds", -1);
+                startPrice = form.getDouble("startPrice", Double.NaN);
+            } catch (NumberFormatException e) {
+                sendTextResponse(exchange, 400, "Error: durationSeconds and startPrice must be numbers.");
+                return;
+            }
+            if (itemName == null || itemName.trim().isEmpty() || durationSeconds <= 0 || !(startPrice >= 0)) {
+                sendTextResponse(exchange, 400, "Error: itemName, a positive durationSeconds and startPrice are required.");
+                return;
+            }
+            int id;
+            try {
+                id = auctionManager.addAuction(itemName.trim(), durationSeconds, startPrice);
+            } catch (IllegalStateException e) {
+                sendTextResponse(exchange, 503, "Error: " + e.getMessage());
+                return;
+            }
+            sendTextResponse(exchange, 200, Integer.toString(id));
+        }
+    }
+
+    // POST /internal/charge from another shard: charges this shard's bidders for what they won there;
+    // see ShardClient for the line format
+    static class ChargeHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                exchange.close();
+                return;
+            }
+            List<ShardClient.Charge> charges;
+            try (InputStream in = exchange.getRequestBody()) {
+                charges = ShardClient.decodeCharges(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                auctionManager.chargeRemoteWins(charges);
+            } catch (IllegalArgumentException e) {
+                sendTextResponse(exchange, 400, "Error: " + e.getMessage());
+                return;
+            } catch (IllegalStateException e) {
+                // Not the request's fault: the sending shard keeps retrying
+                sendTextResponse(exchange, 503, "Error: " + e.getMessage());
+                return;
+            }
+            sendTextResponse(exchange, 200, ShardClient.encodeOutcomes(charges));
+        }
+    }
+
+    // GET /internal/events: every push frame this shard sends, for a router to pass on to its browsers
+    static class EventsFeedHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            PushStream stream = auctionManager.getPushStream();
+            PushStream.Subscriber subscriber = stream.subscribeAll();
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=UTF-8");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(HEARTBEAT);
+                os.flush();
+                while (!subscriber.isClosed()) {
+                    byte[] frame = subscriber.poll(15, TimeUnit.SECONDS);
+                    os.write(frame != null ? frame : HEARTBEAT);
+                    os.flush();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                // The router went away; it reconnects on its own
+            } finally {
+                stream.unsubscribe(subscriber);
+            }
+        }
+    }
+
+    static class BidApiHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if ("POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                BidResult result;
+                try (FormCodec.Form form = FormCodec.readBody(exchange.getRequestBody(), MAX_FORM_BYTES)) {
+                    if (rejectForm(exchange, form)) return;
+                    int auctionId = form.getInt("auctionId", -1);
+                    String bidderName = form.getString("bidderName");
+                    // Proxy bid: the server bids on the bidder's behalf up to maxBid
+                    boolean proxy = form.has("maxBid");
+                    double amount = form.getDouble(proxy ? "maxBid" : "bidAmount", Double.NaN);
+                    if (auctionId < 0 || bidderName == null || Double.isNaN(amount)) {
+                        sendTextResponse(exchange, 400, "Error: auctionId, bidderName and bidAmount or maxBid are required.");
+                        return;
+                    }
+                    result = proxy ? auctionManager.placeMaxBid(auctionId, bidderName, amount)
+                                   : auctionManager.placeBidForResult(auctionId, bidderName, amount);
+                } catch (NumberFormatException e) {
+                    sendTextResponse(exchange, 400, "Error: auctionId and amounts must be numbers.");
+                    return;
+                }
+                sendTextResponse(exchange, 200, result.getMessageBytes());
+            } else {
+                exchange.sendResponseHeaders(405, -1);
+                exchange.close();
+            }
+        }
+    }
+
+    // Batch bids for automated bidders: bidderName=...&bids=<auctionId>:<amount>,<auctionId>:<amount>,...
+    static class BatchBidApiHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                exchange.close();
+                return;
+            }
+            String bidderName;
+            int[] auctionIds;
+            double[] amounts;
+            try (FormCodec.Form form = FormCodec.readBody(exchange.getRequestBody(), MAX_FORM_BYTES)) {
+                if (rejectForm(exchange, form)) return;
+                bidderName = form.getString("bidderName");
+                // Decoded last: the entries are parsed straight out of the form's scratch buffer
+                int length = form.decode("bids");
+                if (bidderName == null || bidderName.trim().isEmpty() || length < 0) {
+                    sendTextResponse(exchange, 400, "Error: bidderName and bids are required.");
+                    return;
+                }
+                byte[] bids = form.scratch();
+                int count = 1;
+                for (int i = 0; i < length; i++) {
+                    if (bids[i] == ',') count++;
+                }
+                if (count > MAX_BATCH_SIZE) {
+                    sendTextResponse(exchange, 413, "Error: At most " + MAX_BATCH_SIZE + " bids per batch.");
+                    return;
+                }
+                auctionIds = new int[count];
+                amounts = new double[count];
+                int start = 0;
+                for (int i = 0; i < count; i++) {
+                    int end = start;
+                    while (end < length && bids[end] != ',') end++;
+                    int colon = start;
+                    while (colon < end && bids[colon] != ':') colon++;
+                    if (colon == end) throw new NumberFormatException("Missing ':'");
+                    auctionIds[i] = FormCodec.parseInt(bids, skipSpaces(bids, start, colon), trimSpaces(bids, start, colon));
+                    amounts[i] = FormCodec.parseDouble(bids, skipSpaces(bids, colon + 1, end), trimSpaces(bids, colon + 1, end));
+                    start = end + 1;
+                }
+            } catch (NumberFormatException e) {
+                sendTextResponse(exchange, 400, "Error: bids must look like 12:150.00,13:80");
+                return;
+            }
+
+            BidResult[] results = auctionManager.placeBids(bidderName, auctionIds, amounts);
+            try (JsonWriter json = JsonWriter.acquire().raw('[')) {
+                for (int i = 0; i < results.length; i++) {
+                    if (i > 0) json.raw(',');
+                    json.raw('"').raw(results[i].getCode()).raw('"');
+                }
+                sendJsonResponse(exchange, json.raw(']'));
+            }
+        }
+
+        private static int skipSpaces(byte[] bytes, int from, int to) {
+            while (from < to && bytes[from] == ' ') from++;
+            return from;
+        }
+
+        private static int trimSpaces(byte[] bytes, int from, int to) {
+            while (to > from && bytes[to - 1] == ' ') to--;
+            return to;
+        }
+    }
+
+    // --- Utility Methods ---
+    static final int MAX_BATCH_SIZE = config.getInt("server.maxBatchBids", 1000);
+    private static final int BID_PAGE_SIZE = 50;
+    private static final int MAX_BID_PAGE_SIZE = 500;
+    static final int MAX_FORM_BYTES = config.getInt("server.maxFormBytes", 256 * 1024);
+    static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+
+    static void sendJsonResponse(HttpExchange exchange, JsonWriter json) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(200, json.size());
+        try (OutputStream os = exchange.getResponseBody()) {
+            json.writeTo(os);
+        }
+    }
+
+    /** Answers 413 for a body past MAX_FORM_BYTES (a null form) or 400 for one with too many fields; true if it did. */
+    static boolean rejectForm(HttpExchange exchange, FormCodec.Form form) throws IOException {
+        if (form == null) {
+            sendTextResponse(exchange, 413, "Error: Request body too large.");
+            return true;
+        }
+        if (form.hasTooManyFields()) {
+            sendTextResponse(exchange, 400, "Error: Too many fields.");
+            return true;
+        }
+        return false;
+    }
+
+    static void sendTextResponse(HttpExchange exchange, int status, String text) throws IOException {
+        sendTextResponse(exchange, status, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static void sendTextResponse(HttpExchange exchange, int status, byte[] response) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        exchange.sendResponseHeaders(status, response.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(response);
+        }
+    }
+}
+
+class AuctionManager {
+    // Wins per page on /api/my-wins and in the stream snapshot
+    static final int WIN_PAGE_SIZE = 100;
+    static final int MAX_WIN_PAGE_SIZE = 1000;
+    // Auctions per page on a filtered or sorted /api/auctions
+    static final int AUCTION_PAGE_SIZE = 50;
+    static final int MAX_AUCTION_PAGE_SIZE = 500;
+    // Leads the snapshot state; older snapshots start with a (positive) next auction id instead
+    private static final int STATE_FORMAT = 4;
+
+    private final AuctionIndex auctions;
+    private final AuctionCatalog catalog = new AuctionCatalog();
+    private final Map<String, Bidder> bidders = new ConcurrentHashMap<>();
+    private final TimingWheel expiryWheel = new TimingWheel("auction-expiry", 100, TimeUnit.MILLISECONDS, 512);
+    // Steps by the shard count, so each shard issues its own ids; 1 when standalone
+    private final int idStride;
+    private final AtomicInteger nextAuctionId;
+    private final PushStream pushStream = new PushStream();
+    private final String bootId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong stateVersion = new AtomicLong(1);
+    private final Object snapshotLock = new Object();
+    private volatile AuctionsSnapshot activeSnapshot;
+    private final AuctionJournal journal;
+    private final BidHistoryStore historyStore;
+    private final AuctionArchive archive;
+    private final ShardMap shards;
+    // Charges winners whose wallets live on other shards; null unless this process is a shard
+    private final ShardClient shardClient;
+    private final Metrics metrics = new Metrics();
+    private final AuctionEvents events = new AuctionEvents("auction-events", AuctionEvents.DEFAULT_CAPACITY);
+    // Held by settlement for a whole batch, and by checkpoints after the gates, so no snapshot
+    // sees a debited wallet without the auction marked settled or the other way round
+    private final Object settlementLock = new Object();
+    // Dispatcher-only scratch for coalescing push frames within a batch
+    private final Set<Auction> pushedAuctions = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<Bidder> pushedWallets = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    public AuctionManager() {
+        this(null);
+    }
+
+    public AuctionManager(AuctionJournal journal) {
+        this(journal, null, null, null);
+    }
+
+    public AuctionManager(AuctionJournal journal, BidHistoryStore historyStore, AuctionArchive archive, AuditLog auditLog) {
+        this(journal, historyStore, archive, auditLog, ShardMap.STANDALONE);
+    }
+
+    // A null journal keeps all state in memory only; a null history store keeps closed auctions' bid rings
+    // in memory, a null archive keeps ended auctions in the live index, and a null audit log writes no trail.
+    // As one shard of several, this manager holds only the auctions and wallets the shard map gives it.
+    public AuctionManager(AuctionJournal journal, BidHistoryStore historyStore, AuctionArchive archive, AuditLog auditLog,
+                          ShardMap shards) {
+        this.journal = journal;
+        this.historyStore = historyStore;
+        this.archive = archive;
+        this.shards = shards;
+        this.shardClient = shards.role == ShardMap.Role.SHARD ? new ShardClient(shards) : null;
+        this.idStride = shards.getShardCount();
+        this.nextAuctionId = new AtomicInteger(shards.getFirstAuctionId());
+        this.auctions = new AuctionIndex(shards.getFirstAuctionId(), idStride);
+        // Settlement first, so the audit log and the push streams see each ending's outcome
+        events.addHandler(this::settle);
+        if (auditLog != null) events.addHandler(auditLog);
+        events.addHandler(this::push);
+        metrics.gauge("auctionaire_active_auctions", "", "Auctions still taking bids", this::getActiveAuctionCount);
+        metrics.gauge("auctionaire_live_auctions", "", "Auctions held in memory, ended ones awaiting archiving included", auctions::size);
+        metrics.gauge("auctionaire_archived_auctions", "", "Ended auctions moved to the archive", this::getArchivedCount);
+        metrics.gauge("auctionaire_bidders", "", "Registered bidders", bidders::size);
+        metrics.gauge("auctionaire_stream_subscribers", "", "Open event streams", pushStream::getSubscriberCount);
+        metrics.gauge("auctionaire_event_backlog", "", "Auction events published but not yet settled, logged and pushed", events::getBacklog);
+        metrics.gauge("auctionaire_event_producer_waits", "", "Times bidding or expiry waited for room in the event ring", events::getProducerWaits);
+    }
+
+    /** Opens an auction and returns its id; IllegalStateException once the journal has failed. */
+    public int addAuction(String itemName, int durationSeconds, double startPrice) {
+        checkJournal();
+        int id = nextAuctionId.getAndAdd(idStride);
+        Auction auction = new Auction(id, itemName, startPrice, durationSeconds, this);
+        Lock gate = lockGate(id);
+        try {
+            auctions.put(auction);
+            if (journal != null) {
+                journal.append(AuctionJournal.CREATE, id, startPrice, auction.getEndsAtMillis(), false, itemName);
+            }
+        } finally {
+            unlockGate(gate);
+        }
+        catalog.add(auction);
+        scheduleExpiry(auction);
+        stateVersion.incrementAndGet();
+        events.publish(AuctionEvents.Type.CREATED, auction, null, startPrice, System.currentTimeMillis(), false);
+        return id;
+    }
+
+    private void scheduleExpiry(Auction auction) {
+        auction.setExpiry(expiryWheel.schedule(() -> expireAuction(auction), auction.getDeadlineNanos()));
+    }
+
+    private void expireAuction(Auction auction) {
+        metrics.recordExpiryLag(System.nanoTime() - auction.getDeadlineNanos());
+        closeAuction(auction);
+    }
+
+    // Closes without counting as an expiry, for stops that recovery finishes
+    private void closeAuction(Auction auction) {
+        Lock gate = lockGate(auction.getId());
+        try {
+            auction.endAuction();
+        } finally {
+            unlockGate(gate);
+        }
+    }
+
+    // --- Callbacks from Auction; every visible change moves the snapshot version and becomes an event ---
+    private void onAuctionUpdated(Auction auction, Bidder bidder, double amount, long timeMillis, boolean proxy) {
+        catalog.updatePrice(auction);
+        stateVersion.incrementAndGet();
+        events.publish(AuctionEvents.Type.BID, auction, bidder, amount, timeMillis, proxy);
+    }
+
+    // These run one at a time per auction, in the order its state moved (see Auction.emit), so the
+    // journal and the event stream see a bid ahead of the counter-bid it caused and nothing after the close
+    long onBidAccepted(Auction auction, Bidder bidder, double amount) {
+        long seq = 0;
+        long now = System.currentTimeMillis();
+        if (journal != null) {
+            seq = journal.append(AuctionJournal.BID, auction.getId(), amount, now, false, bidder.getName());
+        }
+        onAuctionUpdated(auction, bidder, amount, now, false);
+        return seq;
+    }
+
+    // A new or raised maximum, journaled before the bids it makes so replay meets them in that order
+    long onProxyRegistered(Auction auction, Bidder bidder, double maxAmount) {
+        if (journal == null) return 0;
+        return journal.append(AuctionJournal.PROXY, auction.getId(), maxAmount, System.currentTimeMillis(), false, bidder.getName());
+    }
+
+    // A proxy raised its holder's standing bid; flagged so replay does not count it against the bid cap
+    long onProxyBid(Auction auction, Bidder bidder, double amount) {
+        long seq = 0;
+        long now = System.currentTimeMillis();
+        if (journal != null) {
+            seq = journal.append(AuctionJournal.BID, auction.getId(), amount, now, true, bidder.getName());
+        }
+        onAuctionUpdated(auction, bidder, amount, now, true);
+        return seq;
+    }
+
+    // The auction has closed: it leaves the listings now and is paid for by settle
+    void onAuctionClosed(Auction auction, Bidder winner, double amount, long endedAt) {
+        catalog.remove(auction);
+        stateVersion.incrementAndGet();
+        events.publish(AuctionEvents.Type.ENDED, auction, winner, amount, endedAt, false);
+    }
+
+    /**
+     * Pays for every auction that ended in the batch. The event dispatcher is the only thread that
+     * debits wallets for local wins, so a burst of expiries settles in one pass with one wait for
+     * the journal, and neither bidders' monitors nor the disk are touched on the expiry thread.
+     * A winner whose wallet lives on another shard is charged there in the background; the answer
+     * comes back as a SETTLED event and is journaled here like a local settlement. Once the journal
+     * has failed nothing is settled: the auctions stay ended but unpaid until a restart settles them.
+     */
+    private void settle(AuctionEvents.Batch batch) {
+        if (journalFailed()) return;
+        long lastSeq = 0;
+        boolean settledAny = false;
+        Map<Integer, List<ShardClient.Charge>> remote = null;
+        synchronized (settlementLock) {
+            for (int i = 0; i < batch.size(); i++) {
+                AuctionEvents.Event event = batch.get(i);
+                Auction auction = event.auction;
+                Bidder winner = event.bidder;
+                if (event.type == AuctionEvents.Type.ENDED) {
+                    if (winner != null && !shards.isHome(winner.getName())) {
+                        if (remote == null) remote = new HashMap<>();
+                        remote.computeIfAbsent(shards.homeOf(winner.getName()), shard -> new ArrayList<>())
+                              .add(new ShardClient.Charge(auction.getId(), winner.getName(), auction.getItemName(),
+                                                          event.amount, event.timeMillis, auction, winner));
+                        continue;
+                    }
+                    event.winSeq = winner != null ? winner.winAuction(auction.getId(), auction.getItemName(), event.amount, event.timeMillis) : -1;
+                } else if (event.type != AuctionEvents.Type.SETTLED) {
+                    continue;
+                }
+                if (journal != null) {
+                    lastSeq = journal.append(AuctionJournal.SETTLE, auction.getId(), event.amount, event.timeMillis, event.winSeq >= 0,
+                                             winner != null ? winner.getName() : "");
+                }
+                auction.markSettled();
+                event.settled = true;
+                settledAny = true;
+            }
+        }
+        if (remote != null) {
+            for (Map.Entry<Integer, List<ShardClient.Charge>> entry : remote.entrySet()) {
+                shardClient.charge(entry.getKey(), entry.getValue(), this::onRemoteCharged);
+            }
+        }
+        if (!settledAny) return;
+        // Nothing below announces a win or archives an auction before its settlement is on disk
+        if (lastSeq != 0 && !journal.awaitDurable(lastSeq)) {
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).settled = false;
+            }
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            AuctionEvents.Event event = batch.get(i);
+            if (!event.settled) continue;
+            Auction auction = event.auction;
+            if (archive != null) {
+                archive.archive(auction, this::onAuctionArchived);
+            } else if (historyStore != null && auction.getBidHistory() != null) {
+                historyStore.spill(auction);
+            }
+            metrics.recordEnding(event.bidder == null ? Metrics.Ending.UNSOLD
+                                 : event.winSeq >= 0 ? Metrics.Ending.SOLD : Metrics.Ending.UNPAID);
+        }
+    }
+
+    // On a ShardClient sender thread, once a home shard has answered for its winners or refused them
+    private void onRemoteCharged(List<ShardClient.Charge> charges) {
+        for (ShardClient.Charge charge : charges) {
+            if (charge.refusal == null) charge.winner.observeWallet(charge.wallet);
+            events.publish(AuctionEvents.Type.SETTLED, charge.auction, charge.winner, charge.amount, charge.wonAtMillis,
+                           false, charge.winSeq);
+        }
+    }
+
+    /**
+     * Charges this shard's bidders for auctions won on other shards, filling in each charge's
+     * outcome. An auction already charged for keeps its first outcome, so a retried request
+     * (from a shard that crashed before recording the answer) never pays twice. A charge that
+     * found the wallet short is not recorded: wallets only go down, so the retry finds it short too.
+     * IllegalStateException once the journal has failed, so the caller retries after a restart.
+     */
+    public void chargeRemoteWins(List<ShardClient.Charge> charges) {
+        checkJournal();
+        for (ShardClient.Charge charge : charges) {
+            if (!shards.isHome(charge.bidderName)) {
+                throw new IllegalArgumentException("Bidder " + charge.bidderName + " does not live on shard " + shards.index);
+            }
+        }
+        long lastSeq = 0;
+        List<ShardClient.Charge> fresh = new ArrayList<>();
+        synchronized (settlementLock) {
+            for (ShardClient.Charge charge : charges) {
+                Bidder bidder = bidder(charge.bidderName);
+                int winSeq = bidder.findWin(charge.auctionId);
+                if (winSeq < 0) {
+                    winSeq = bidder.winAuction(charge.auctionId, charge.itemName, charge.amount, charge.wonAtMillis);
+                    if (winSeq >= 0) {
+                        fresh.add(charge);
+                        if (journal != null) {
+                            lastSeq = journal.append(AuctionJournal.WIN, charge.auctionId, charge.amount, charge.wonAtMillis, false,
+                                                     encodeWin(charge.bidderName, charge.itemName));
+                        }
+                    }
+                }
+                charge.winSeq = winSeq;
+                charge.wallet = bidder.getWallet();
+            }
+        }
+        if (lastSeq != 0 && !journal.awaitDurable(lastSeq)) {
+            // Only a failed journal gives up waiting, so this throws
+            checkJournal();
+        }
+        for (ShardClient.Charge charge : fresh) {
+            Bidder bidder = bidder(charge.bidderName);
+            pushStream.sendTo(charge.bidderName, "won", bidder.winJson(charge.winSeq));
+            pushStream.sendTo(charge.bidderName, "wallet", bidder.toJson());
+        }
+    }
+
+    // A WIN record's text carries both names: "<bidder length>:<bidder><item>"
+    private static String encodeWin(String bidderName, String itemName) {
+        return bidderName.length() + ":" + bidderName + itemName;
+    }
+
+    // One "auction" frame per auction per batch, however many bids it took, then the endings in order
+    private void push(AuctionEvents.Batch batch) {
+        if (pushStream.getSubscriberCount() == 0) return;
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            AuctionEvents.Event event = batch.get(i);
+            boolean changed = event.type == AuctionEvents.Type.CREATED || event.type == AuctionEvents.Type.BID;
+            // The frame carries the auction's state now; an auction that has since closed gets its "ended" instead
+            if (changed && event.auction.isActive() && pushedAuctions.add(event.auction)) {
+                pushStream.broadcast("auction", event.auction.toJson());
+            }
+        }
+        pushedAuctions.clear();
+        for (int i = 0; i < batch.size(); i++) {
+            AuctionEvents.Event event = batch.get(i);
+            if (event.type != AuctionEvents.Type.ENDED) continue;
+            pushStream.broadcast("ended", event.auction.toJson());
+            if (event.settled && event.winSeq >= 0) {
+                pushStream.sendTo(event.bidder.getName(), "won", event.bidder.winJson(event.winSeq));
+                pushedWallets.add(event.bidder);
+            }
+        }
+        for (Bidder winner : pushedWallets) {
+            pushStream.sendTo(winner.getName(), "wallet", winner.toJson());
+        }
+        pushedWallets.clear();
+    }
+
+    // The archive has the auction on disk; from here on lookups fall through to it
+    private void onAuctionArchived(Auction auction) {
+        Lock gate = lockGate(auction.getId());
+        try {
+            auctions.remove(auction.getId());
+        } finally {
+            unlockGate(gate);
+        }
+    }
+
+    // An id this shard issued that is no longer live can only belong to an archived auction
+    private BidResult missingAuction(int auctionId) {
+        return shards.ownsAuction(auctionId) && auctionId <= getLastAuctionId() && archive != null
+            ? BidResult.AUCTION_ENDED : BidResult.NOT_FOUND;
+    }
+
+    public PushStream getPushStream() {
+        return pushStream;
+    }
+
+    /** Adds a handler after settlement, the audit log and the push streams; see AuctionEvents.Handler. */
+    public void addEventHandler(AuctionEvents.Handler handler) {
+        events.addHandler(handler);
+    }
+
+    /** Waits until every event so far has been settled, logged and pushed. */
+    public void awaitEventsDispatched() {
+        events.awaitDispatched();
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    int getHistoryCapacity() {
+        return historyStore != null ? historyStore.getCapacity() : BidHistoryStore.DEFAULT_CAPACITY;
+    }
+
+    private Bidder bidder(String name) {
+        return bidders.computeIfAbsent(name, Bidder::new);
+    }
+
+    /** Writes a page of the auction's bids, from memory or from the spill file; false if there is no such auction. */
+    public boolean writeBidHistoryJson(int auctionId, long before, int limit, JsonWriter out) throws IOException {
+        Auction auction = auctions.get(auctionId);
+        BidHistory history = null;
+        long offset;
+        if (auction != null) {
+            history = auction.getBidHistory();
+            offset = auction.getHistoryOffset();
+        } else {
+            AuctionArchive.ArchivedAuction archived = archive != null ? archive.get(auctionId) : null;
+            if (archived == null) return false;
+            offset = archived.historyOffset;
+        }
+        if (history == null) {
+            if (offset >= 0 && historyStore != null) {
+                history = historyStore.read(offset);
+            }
+        }
+        if (history == null) {
+            out.raw("{\"auctionId\":").number(auctionId).raw(", \"total\":0, \"next\":null, \"bids\":[]}");
+        } else {
+            history.writePageJson(auctionId, before, limit, out);
+        }
+        return true;
+    }
+    
+    // Lookups go through the id index; only the target auction's journal stripe is taken
+    public void stopAuction(int auctionId) {
+        checkJournal();
+        Auction auction = auctions.get(auctionId);
+        if (auction != null && auction.isActive()) {
+            Lock gate = lockGate(auctionId);
+            try {
+                long now = System.currentTimeMillis();
+                if (journal != null) {
+                    journal.append(AuctionJournal.STOP, auctionId, 0, now, false, null);
+                }
+                events.publish(AuctionEvents.Type.STOPPED, auction, null, 0, now, false);
+                auction.stopAuction();
+            } finally {
+                unlockGate(gate);
+            }
+        }
+    }
+
+    public String placeBid(int auctionId, String bidderName, double amount) {
+        return placeBidForResult(auctionId, bidderName, amount).getMessage();
+    }
+
+    public BidResult placeBidForResult(int auctionId, String bidderName, double amount) {
+        Bidder bidder = bidders.computeIfAbsent(bidderName.trim(), Bidder::new);
+
+        if (bidder.getWallet() < amount) {
+            return metrics.recordBid(BidResult.INSUFFICIENT_FUNDS);
+        }
+        
+        Auction auction = auctions.get(auctionId);
+        if (auction == null) {
+            return metrics.recordBid(missingAuction(auctionId));
+        }
+        if (journalFailed()) {
+            return metrics.recordBid(BidResult.UNAVAILABLE);
+        }
+        BidResult result;
+        long seq = 0;
+        Lock gate = lockGate(auctionId);
+        try {
+            result = auction.placeBid(bidder, amount);
+            if (result.isPlaced()) {
+                seq = auction.getJournalSeq();
+            }
+        } finally {
+            unlockGate(gate);
+        }
+        // A bid the journal could not keep is not reported as placed, though it stands until restart
+        if (seq != 0 && !journal.awaitDurable(seq)) {
+            result = BidResult.UNAVAILABLE;
+        }
+        return metrics.recordBid(result);
+    }
+
+    /** Registers or raises a bidder's maximum; the auction bids for them up to it as others bid. */
+    public BidResult placeMaxBid(int auctionId, String bidderName, double maxAmount) {
+        Bidder bidder = bidders.computeIfAbsent(bidderName.trim(), Bidder::new);
+
+        if (bidder.getWallet() < maxAmount) {
+            return metrics.recordBid(BidResult.INSUFFICIENT_FUNDS);
+        }
+
+        Auction auction = auctions.get(auctionId);
+        if (auction == null) {
+            return metrics.recordBid(missingAuction(auctionId));
+        }
+        if (journalFailed()) {
+            return metrics.recordBid(BidResult.UNAVAILABLE);
+        }
+        BidResult result;
+        long seq = 0;
+        Lock gate = lockGate(auctionId);
+        try {
+            result = auction.registerProxy(bidder, maxAmount);
+            if (result.isPlaced()) {
+                seq = auction.getJournalSeq();
+            }
+        } finally {
+            unlockGate(gate);
+        }
+        // A bid the journal could not keep is not reported as placed, though it stands until restart
+        if (seq != 0 && !journal.awaitDurable(seq)) {
+            result = BidResult.UNAVAILABLE;
+        }
+        return metrics.recordBid(result);
+    }
+
+    /**
+     * Applies a batch of bids from one bidder. Bids are grouped by auction so each touched auction's
+     * gate is taken once, in submission order within the auction, and the whole batch waits for a
+     * single journal flush. Results line up with the input arrays.
+     */
+    public BidResult[] placeBids(String bidderName, int[] auctionIds, double[] amounts) {
+        Bidder bidder = bidders.computeIfAbsent(bidderName.trim(), Bidder::new);
+        int n = auctionIds.length;
+        BidResult[] results = new BidResult[n];
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, Comparator.comparingInt(i -> auctionIds[i]));
+        if (journalFailed()) {
+            for (int k = 0; k < n; k++) results[k] = metrics.recordBid(BidResult.UNAVAILABLE);
+            return results;
+        }
+
+        long lastSeq = 0;
+        int i = 0;
+        while (i < n) {
+            int auctionId = auctionIds[order[i]];
+            int end = i;
+            while (end < n && auctionIds[order[end]] == auctionId) end++;
+            Auction auction = auctions.get(auctionId);
+            if (auction == null) {
+                for (int k = i; k < end; k++) results[order[k]] = missingAuction(auctionId);
+                i = end;
+                continue;
+            }
+            Lock gate = lockGate(auctionId);
+            try {
+                for (int k = i; k < end; k++) {
+                    int index = order[k];
+                    double amount = amounts[index];
+                    BidResult result = bidder.getWallet() < amount ? BidResult.INSUFFICIENT_FUNDS : auction.placeBid(bidder, amount);
+                    if (result.isPlaced()) {
+                        lastSeq = Math.max(lastSeq, auction.getJournalSeq());
+                    }
+                    results[index] = result;
+                }
+            } finally {
+                unlockGate(gate);
+            }
+            i = end;
+        }
+        boolean durable = lastSeq == 0 || journal.awaitDurable(lastSeq);
+        for (int k = 0; k < n; k++) {
+            if (!durable && results[k].isPlaced()) results[k] = BidResult.UNAVAILABLE;
+            metrics.recordBid(results[k]);
+        }
+        return results;
+    }
+
+    private boolean journalFailed() {
+        return journal != null && journal.isFailed();
+    }
+
+    // New auctions and stops are refused outright once the journal cannot record them
+    private void checkJournal() {
+        if (journalFailed()) {
+            throw new IllegalStateException("The journal has failed; restart the server to take changes again.");
+        }
+    }
+
+    private Lock lockGate(int auctionId) {
+        if (journal == null) return null;
+        Lock gate = journal.gate(auctionId);
+        gate.lock();
+        return gate;
+    }
+
+    private static void unlockGate(Lock gate) {
+        if (gate != null) gate.unlock();
+    }
+
+    // --- Journal recovery and checkpoints ---
+
+    /** Rebuilds auctions and wallets from the last snapshot plus the journal, then resumes expiry. */
+    public void recover() throws IOException {
+        if (journal == null) return;
+        AuctionJournal.Snapshot snapshot = journal.readSnapshot();
+        long sealedSegment = 0;
+        if (snapshot != null) {
+            sealedSegment = snapshot.sealedSegment;
+            restoreState(snapshot.state);
+        }
+        Set<Integer> stopped = new HashSet<>();
+        journal.replay(sealedSegment, (type, id, amount, time, flag, text) -> {
+            Auction auction = auctions.get(id);
+            switch (type) {
+                case AuctionJournal.CREATE:
+                    if (auction == null) {
+                        auctions.put(new Auction(id, text, amount, time, this));
+                        nextAuctionId.accumulateAndGet(id + idStride, Math::max);
+                    }
+                    break;
+                case AuctionJournal.BID:
+                    if (auction != null) auction.replayBid(bidders.computeIfAbsent(text, Bidder::new), amount, !flag, time);
+                    break;
+                case AuctionJournal.PROXY:
+                    if (auction != null) auction.replayProxy(bidders.computeIfAbsent(text, Bidder::new), amount);
+                    break;
+                case AuctionJournal.STOP:
+                    stopped.add(id);
+                    break;
+                case AuctionJournal.SETTLE:
+                    if (auction != null && !auction.isSettled()) {
+                        auction.replayClose();
+                        // A winner from another shard was charged there, and that shard's journal has the WIN
+                        if (flag && shards.isHome(text)) bidders.computeIfAbsent(text, Bidder::new).replayWin(id, auction.getItemName(), amount, time);
+                    }
+                    break;
+                case AuctionJournal.WIN: {
+                    int split = text.indexOf(':');
+                    int nameEnd = split + 1 + Integer.parseInt(text.substring(0, split));
+                    bidders.computeIfAbsent(text.substring(split + 1, nameEnd), Bidder::new)
+                           .replayWin(id, text.substring(nameEnd), amount, time);
+                    break;
+                }
+                default:
+                    throw new IllegalStateException("Unknown journal record type " + type);
+            }
+        });
+        journal.open(sealedSegment);
+
+        int resumed = 0;
+        for (Auction auction : auctions.values()) {
+            if (!auction.isSettled() && !auction.isActive()) {
+                // Closed before a crash that came ahead of its settlement; settle (and archive) it now
+                events.publish(AuctionEvents.Type.ENDED, auction, auction.getHighestBidder(), auction.getHighestBid(),
+                               Math.min(auction.getEndsAtMillis(), System.currentTimeMillis()), false);
+                continue;
+            }
+            if (!auction.isActive()) {
+                // Settled, and either archived after the last checkpoint or not archived yet
+                if (archive != null) {
+                    if (archive.contains(auction.getId())) {
+                        auctions.remove(auction.getId());
+                    } else {
+                        archive.archive(auction, this::onAuctionArchived);
+                    }
+                } else if (historyStore != null && auction.getBidHistory() != null) {
+                    historyStore.spill(auction);
+                }
+                continue;
+            }
+            // A stop that reached the journal without its settlement is finished now
+            if (stopped.contains(auction.getId())) {
+                closeAuction(auction);
+            } else {
+                catalog.add(auction);
+                scheduleExpiry(auction);
+                resumed++;
+            }
+        }
+        stateVersion.incrementAndGet();
+        journal.startCheckpoints(this::checkpoint);
+        System.out.println("LOG: Recovered " + auctions.size() + " live auctions, " + getArchivedCount() + " archived and "
+                           + bidders.size() + " bidders, " + resumed + " still running.");
+    }
+
+    private void checkpoint() {
+        try {
+            long sealedSegment;
+            byte[] state;
+            journal.lockAllGates();
+            try {
+                synchronized (settlementLock) {
+                    sealedSegment = journal.rotate();
+                    state = encodeState();
+                }
+            } finally {
+                journal.unlockAllGates();
+            }
+            journal.writeSnapshot(sealedSegment, state);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("LOG: Journal checkpoint failed: " + e);
+        }
+    }
+
+    // Only live auctions go into the snapshot; archived ones are already on disk in the archive
+    private byte[] encodeState() throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            out.writeInt(-STATE_FORMAT);
+            out.writeInt(nextAuctionId.get());
+            List<Bidder> bidderList = new ArrayList<>(bidders.values());
+            out.writeInt(bidderList.size());
+            for (Bidder bidder : bidderList) {
+                bidder.writeTo(out);
+            }
+            List<Auction> auctionList = auctions.values();
+            out.writeInt(auctionList.size());
+            for (Auction auction : auctionList) {
+                auction.writeTo(out);
+            }
+        }
+        return buffer.toByteArray();
+    }
+
+    private void restoreState(byte[] state) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(state))) {
+            int first = in.readInt();
+            int format = first < 0 ? -first : 1;
+            nextAuctionId.set(first < 0 ? in.readInt() : first);
+            int bidderCount = in.readInt();
+            for (int i = 0; i < bidderCount; i++) {
+                Bidder bidder = Bidder.readFrom(in, format);
+                bidders.put(bidder.getName(), bidder);
+            }
+            int auctionCount = in.readInt();
+            for (int i = 0; i < auctionCount; i++) {
+                auctions.put(Auction.readFrom(in, this::bidder, this, format));
+            }
+            for (Bidder bidder : bidders.values()) {
+                bidder.linkItemNames(auctions);
+            }
+        }
+    }
+
+    /** Auctions held in memory, in id order: every running one plus any ended ones not archived yet. */
+    public List<Auction> getLiveAuctions() {
+        return auctions.values();
+    }
+
+    public int getArchivedCount() {
+        return archive != null ? archive.getCount() : 0;
+    }
+
+    /** Up to limit archived auctions with ids below beforeId, newest first; empty without an archive. */
+    public List<AuctionArchive.ArchivedAuction> getArchivedAuctions(int beforeId, int limit) throws IOException {
+        return archive != null ? archive.page(beforeId, limit) : Collections.emptyList();
+    }
+
+    public int getActiveAuctionCount() {
+        int count = 0;
+        for (Auction auction : auctions.values()) {
+            if (auction.isActive()) count++;
+        }
+        return count;
+    }
+
+    public int getBidderCount() {
+        return bidders.size();
+    }
+
+    public Auction getAuction(int auctionId) {
+        return auctions.get(auctionId);
+    }
+
+    // Ids are handed out in steps of the shard count, so up to getLastAuctionId() every id this shard
+    // owns is a live or archived auction
+    public int getLastAuctionId() {
+        return nextAuctionId.get() - idStride;
+    }
+    
+    public String getActiveAuctionsAsJson() {
+        return new String(getActiveAuctionsSnapshot().json, StandardCharsets.UTF_8);
+    }
+
+    /** Active auctions as ready-to-send bytes, re-encoded at most once per state version. */
+    public AuctionsSnapshot getActiveAuctionsSnapshot() {
+        AuctionsSnapshot current = activeSnapshot;
+        if (current != null && current.version == stateVersion.get()) {
+            return current;
+        }
+        synchronized (snapshotLock) {
+            long version = stateVersion.get();
+            current = activeSnapshot;
+            if (current == null || current.version != version) {
+                List<Auction> all = auctions.values();
+                JsonWriter json = new JsonWriter(all.size() * 128 + 2).raw('[');
+                boolean first = true;
+                for (Auction auction : all) {
+                    if (!auction.isActive()) continue;
+                    if (!first) json.raw(", ");
+                    auction.writeJson(json);
+                    first = false;
+                }
+                current = new AuctionsSnapshot(version, "\"" + bootId + "-" + version + "\"", json.raw(']').toByteArray());
+                activeSnapshot = current;
+            }
+            return current;
+        }
+    }
+    
+    /** A page of open auctions matching the query, in its order; see AuctionCatalog.writePageJson. */
+    public void writeAuctionPageJson(AuctionCatalog.Query query, JsonWriter out) {
+        catalog.writePageJson(query, out);
+    }
+
+    /** A page of the bidder's wins from sequence number since; see Bidder.writeWinsJson. */
+    public void writeWonAuctionsJson(String bidderName, int since, int limit, JsonWriter out) {
+        Bidder bidder = bidders.get(bidderName);
+        if (bidder != null) {
+            bidder.writeWinsJson(since, limit, out);
+        } else {
+            out.raw("{\"version\":0, \"next\":0, \"wins\":[]}");
+        }
+    }
+
+    public void writeStreamSnapshotJson(String bidderName, JsonWriter out) {
+        Bidder bidder = bidders.computeIfAbsent(bidderName.trim(), Bidder::new);
+        out.raw("{\"serverTime\":").number(System.currentTimeMillis())
+           .raw(", \"auctions\":").raw(getActiveAuctionsSnapshot().json)
+           .raw(", \"status\":");
+        bidder.writeJson(out);
+        out.raw(", \"wins\":");
+        bidder.writeWinsJson(0, WIN_PAGE_SIZE, out);
+        out.raw('}');
+    }
+
+    public void writeBidderStatusJson(String bidderName, JsonWriter out) {
+        Bidder bidder = bidders.computeIfAbsent(bidderName.trim(), Bidder::new);
+        bidder.writeJson(out);
+    }
+
+    static final class AuctionsSnapshot {
+        final long version;
+        final String etag;
+        final byte[] json;
+        final byte[] gzip;
+
+        AuctionsSnapshot(long version, String etag, byte[] json) {
+            this.version = version;
+            this.etag = etag;
+            this.json = json;
+            this.gzip = gzip(json);
+        }
+
+        private static byte[] gzip(byte[] data) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(data.length / 4 + 64);
+            try (GZIPOutputStream gz = new GZIPOutputStream(buffer)) {
+                gz.write(data);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return buffer.toByteArray();
+        }
+    }
+}
+
+enum BidResult {
+    ACCEPTED("OK", "Success: Your bid has been placed!"),
+    AUCTION_ENDED("ENDED", "Error: Auction has ended."),
+    TOO_LOW("LOW", "Error: Your bid must be higher than the current highest bid."),
+    BID_LIMIT("LIMIT", "Error: You have reached the maximum of 10 bids for this item."),
+    INSUFFICIENT_FUNDS("FUNDS", "Error: Insufficient funds."),
+    NOT_FOUND("NOT_FOUND", "Error: Auction not found."),
+    OUTBID("OUTBID", "Outbid: Your bid was placed, but another bidder's maximum bid is higher."),
+    UNAVAILABLE("UNAVAILABLE", "Error: Bids cannot be recorded right now. Please try again later.");
+
+    private final String code;
+    private final String message;
+    private final byte[] messageBytes;
+
+    BidResult(String code, String message) {
+        this.code = code;
+        this.message = message;
+        this.messageBytes = message.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Short form used in batch responses
+    public String getCode() { return code; }
+    public String getMessage() { return message; }
+    // Encoded once; callers must not modify it
+    byte[] getMessageBytes() { return messageBytes; }
+
+    // The bid went on record, even if a proxy immediately topped it
+    public boolean isPlaced() { return this == ACCEPTED || this == OUTBID; }
+}
+
+class Auction {
+    private static final int MAX_BIDS_PER_BIDDER = 10;
+    // Smallest step a proxy uses to move past a competing bid
+    private static final double PROXY_INCREMENT = 1.00;
+
+    private final int id;
+    private final String itemName;
+    private final double startPrice;
+    private final long deadlineNanos;
+    private final long endsAtMillis;
+    private volatile TimingWheel.Timeout expiry;
+    // Highest bid, highest bidder and open/closed move together through one CAS. Each state links
+    // back to the one it replaced until it has been emitted, so the changes line up in CAS order.
+    private final AtomicReference<BidState> state;
+    private final ConcurrentHashMap<String, AtomicInteger> bidCounts = new ConcurrentHashMap<>();
+
+    // Held by the one thread journaling and publishing the auction's pending changes; see emit
+    private final AtomicBoolean emitting = new AtomicBoolean();
+
+    // Max-bid proxies, highest first; manual bids only take proxyLock once a proxy exists
+    private final Object proxyLock = new Object();
+    private final PriorityQueue<Proxy> proxies = new PriorityQueue<>();
+    private final Map<String, Proxy> proxyByBidder = new HashMap<>();
+    private volatile boolean hasProxies;
+    private long proxySeq;
+
+    // Set once the winner has been charged (or there was none) and the SETTLE record written
+    private volatile boolean settled;
+
+    // Newest bids, created on the first one; after close, replaced by the spill file offset
+    private volatile BidHistory history;
+    private volatile long historyOffset = -1;
+
+    // Highest journal sequence among this auction's bids, manual and proxy; a bidder waits for it
+    // before hearing the answer, which covers their own record and any counter-bid it triggered
+    private final AtomicLong journalSeq = new AtomicLong();
+
+    // Where the manager's catalog has this auction filed while it is open; guarded by the catalog
+    AuctionCatalog.Listing listing;
+    
+    private final AuctionManager manager;
+
+    public Auction(int id, String itemName, double startPrice, int duration, AuctionManager manager) {
+        this(id, itemName, startPrice, System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(duration), manager);
+    }
+
+    // Used directly when restoring from the journal, where only the wall-clock end time survives
+    Auction(int id, String itemName, double startPrice, long endsAtMillis, AuctionManager manager) {
+        this.id = id;
+        this.itemName = itemName;
+        this.startPrice = startPrice;
+        this.state = new AtomicReference<>(new BidState(startPrice, null, true));
+        this.endsAtMillis = endsAtMillis;
+        this.deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(endsAtMillis - System.currentTimeMillis());
+        this.manager = manager;
+    }
+    
+    public int getId() { return id; }
+    public String getItemName() { return itemName; }
+    public double getStartPrice() { return startPrice; }
+    public double getHighestBid() { return state.get().amount; }
+    public String getHighestBidderName() { return state.get().bidderName(); }
+    Bidder getHighestBidder() { return state.get().bidder; }
+    public boolean isActive() { return state.get().open; }
+    boolean isSettled() { return settled; }
+    void markSettled() { settled = true; }
+    public long getEndsAtMillis() { return endsAtMillis; }
+    long getDeadlineNanos() { return deadlineNanos; }
+    public String getStatus() {
+        BidState current = state.get();
+        if (current.open) return "Active";
+        if (current.bidder != null) return "Won by " + current.bidderName();
+        return "Ended (No Bids)";
+    }
+
+    // Remaining whole seconds, derived from the deadline rather than counted down by a thread
+    public int getRemainingTime() {
+        if (!isActive()) return 0;
+        long remainingNanos = deadlineNanos - System.nanoTime();
+        if (remainingNanos <= 0) return 0;
+        return (int) ((remainingNanos + 999_999_999L) / 1_000_000_000L);
+    }
+
+    long getJournalSeq() { return journalSeq.get(); }
+
+    private void noteJournaled(long seq) {
+        if (seq != 0) journalSeq.accumulateAndGet(seq, Math::max);
+    }
+
+    BidHistory getBidHistory() { return history; }
+    long getHistoryOffset() { return historyOffset; }
+
+    void onHistorySpilled(long offset) {
+        historyOffset = offset;
+        history = null;
+    }
+
+    private void recordBid(Bidder bidder, double amount, long timeMillis) {
+        BidHistory current = history;
+        if (current == null) {
+            synchronized (this) {
+                current = history;
+                if (current == null) {
+                    current = new BidHistory(manager.getHistoryCapacity());
+                    history = current;
+                }
+            }
+        }
+        current.record(bidder.getName(), amount, timeMillis);
+    }
+
+    void setExpiry(TimingWheel.Timeout expiry) {
+        this.expiry = expiry;
+    }
+    
+    public void stopAuction() {
+        TimingWheel.Timeout timeout = expiry;
+        if (timeout == null || timeout.cancel()) {
+            endAuction();
+        }
+    }
+
+    void endAuction() {
+        BidState current;
+        BidState closed;
+        do {
+            current = state.get();
+            if (!current.open) return;
+            closed = new BidState(current, current.amount, current.bidder, false, BidState.CLOSE);
+        } while (!state.compareAndSet(current, closed));
+        emit(closed);
+    }
+    
+    public BidResult placeBid(Bidder bidder, double amount) {
+        BidState current = state.get();
+        if (!current.open || System.nanoTime() - deadlineNanos >= 0) return BidResult.AUCTION_ENDED;
+        if (amount <= current.amount) return BidResult.TOO_LOW;
+
+        // Reserve one of the bidder's slots up front and hand it back if the bid loses the race
+        AtomicInteger count = bidCounts.computeIfAbsent(bidder.getName(), name -> new AtomicInteger());
+        if (!tryReserveBid(count)) return BidResult.BID_LIMIT;
+
+        BidState placed = new BidState(current, amount, bidder, true, BidState.BID);
+        while (!state.compareAndSet(current, placed)) {
+            current = state.get();
+            if (!current.open || System.nanoTime() - deadlineNanos >= 0) {
+                count.decrementAndGet();
+                return BidResult.AUCTION_ENDED;
+            }
+            if (amount <= current.amount) {
+                count.decrementAndGet();
+                return BidResult.TOO_LOW;
+            }
+            placed = new BidState(current, amount, bidder, true, BidState.BID);
+        }
+        if (!hasProxies) {
+            emit(placed);
+            return BidResult.ACCEPTED;
+        }
+        BidState last;
+        synchronized (proxyLock) {
+            last = resolveProxies(placed);
+        }
+        emit(last);
+        return state.get().bidder != bidder ? BidResult.OUTBID : BidResult.ACCEPTED;
+    }
+
+    /**
+     * Registers (or replaces) the bidder's maximum and lets the proxies settle. Counts as one bid
+     * against the per-bidder cap; the automatic raises that follow do not.
+     */
+    public BidResult registerProxy(Bidder bidder, double maxAmount) {
+        BidState last;
+        synchronized (proxyLock) {
+            BidState current = state.get();
+            if (!current.open || System.nanoTime() - deadlineNanos >= 0) return BidResult.AUCTION_ENDED;
+            if (maxAmount <= current.amount) return BidResult.TOO_LOW;
+            AtomicInteger count = bidCounts.computeIfAbsent(bidder.getName(), name -> new AtomicInteger());
+            if (!tryReserveBid(count)) return BidResult.BID_LIMIT;
+
+            // The state is unchanged, but the registration takes its place among the auction's changes
+            // so that it is journaled ahead of the raises it leads to
+            BidState registered = BidState.registration(current, bidder, maxAmount);
+            while (!state.compareAndSet(current, registered)) {
+                current = state.get();
+                if (!current.open || System.nanoTime() - deadlineNanos >= 0) {
+                    count.decrementAndGet();
+                    return BidResult.AUCTION_ENDED;
+                }
+                if (maxAmount <= current.amount) {
+                    count.decrementAndGet();
+                    return BidResult.TOO_LOW;
+                }
+                registered = BidState.registration(current, bidder, maxAmount);
+            }
+            addProxy(bidder, maxAmount);
+            last = resolveProxies(registered);
+        }
+        emit(last);
+        return state.get().bidder == bidder ? BidResult.ACCEPTED : BidResult.OUTBID;
+    }
+
+    private void addProxy(Bidder bidder, double maxAmount) {
+        Proxy previous = proxyByBidder.get(bidder.getName());
+        if (previous != null) previous.superseded = true;
+        Proxy proxy = new Proxy(bidder, maxAmount, ++proxySeq);
+        proxies.add(proxy);
+        proxyByBidder.put(bidder.getName(), proxy);
+        hasProxies = true;
+    }
+
+    /**
+     * Moves the standing bid to where the proxies put it: the top proxy leads at one increment over
+     * the larger of the current bid and the runner-up's maximum, capped at its own maximum and its
+     * holder's wallet. Each step is O(log n) in the number of proxies. Caller holds proxyLock.
+     * Returns the last raise it made, or last if it made none.
+     */
+    private BidState resolveProxies(BidState last) {
+        while (true) {
+            BidState current = state.get();
+            if (!current.open) return last;
+            Proxy top = pollLive();
+            if (top == null) return last;
+
+            double topMax = Math.min(top.maxAmount, top.bidder.getWallet());
+            if (topMax < top.maxAmount) {
+                // The holder spent money elsewhere; re-rank the proxy at what they can still afford
+                Proxy reduced = new Proxy(top.bidder, topMax, top.seq);
+                proxyByBidder.put(top.bidder.getName(), reduced);
+                proxies.add(reduced);
+                continue;
+            }
+            if (current.bidder != top.bidder && topMax <= current.amount) {
+                // Exhausted: this proxy can never lead again, so it stays out of the heap
+                proxyByBidder.remove(top.bidder.getName(), top);
+                continue;
+            }
+            Proxy runnerUp = peekLive();
+            proxies.add(top);
+            double runnerUpMax = runnerUp != null ? runnerUp.maxAmount : Double.NEGATIVE_INFINITY;
+
+            double target;
+            if (current.bidder == top.bidder) {
+                target = Math.min(topMax, runnerUpMax + PROXY_INCREMENT);
+                if (target <= current.amount) return last;
+            } else {
+                target = Math.min(topMax, Math.max(current.amount, runnerUpMax) + PROXY_INCREMENT);
+            }
+            // A manual bid that gets in first is answered on the next pass
+            BidState raised = new BidState(current, target, top.bidder, true, BidState.PROXY_BID);
+            if (state.compareAndSet(current, raised)) last = raised;
+        }
+    }
+
+    /**
+     * Journals, records and publishes the auction's changes up to and including the given one,
+     * oldest first, and notes the journal sequence its bidder must wait for. Whichever thread takes
+     * emitting puts out every pending change, its own and those of the bidders that won their CAS
+     * meanwhile, in the order the CAS calls succeeded. The others only wait for their own change
+     * to come out; bids that lost their CAS never get here, so a slow disk or a full event ring
+     * holds up the bids being made, not the ones being turned away.
+     */
+    private void emit(BidState change) {
+        while (!change.emitted) {
+            if (emitting.compareAndSet(false, true)) {
+                try {
+                    emitPending();
+                } finally {
+                    emitting.set(false);
+                }
+            } else {
+                Thread.yield();
+            }
+        }
+        noteJournaled(change.journalSeq);
+    }
+
+    private void emitPending() {
+        // Walk back to the last change already out, linking the pending ones oldest first
+        BidState pending = null;
+        for (BidState change = state.get(); !change.emitted; change = change.previous) {
+            change.next = pending;
+            pending = change;
+        }
+        while (pending != null) {
+            BidState change = pending;
+            pending = change.next;
+            change.next = null;
+            change.previous = null;
+            long now = System.currentTimeMillis();
+            switch (change.kind) {
+                case BidState.BID:
+                case BidState.PROXY_BID:
+                    recordBid(change.bidder, change.amount, now);
+                    change.journalSeq = change.kind == BidState.BID
+                            ? manager.onBidAccepted(this, change.bidder, change.amount)
+                            : manager.onProxyBid(this, change.bidder, change.amount);
+                    break;
+                case BidState.PROXY:
+                    change.journalSeq = manager.onProxyRegistered(this, change.registrant, change.maximum);
+                    break;
+                case BidState.CLOSE:
+                    manager.onAuctionClosed(this, change.bidder, change.amount, now);
+                    break;
+                default:
+                    break;
+            }
+            change.emitted = true;
+        }
+    }
+
+    private Proxy pollLive() {
+        Proxy proxy;
+        while ((proxy = proxies.poll()) != null && proxy.superseded) { }
+        return proxy;
+    }
+
+    private Proxy peekLive() {
+        Proxy proxy;
+        while ((proxy = proxies.peek()) != null && proxy.superseded) {
+            proxies.poll();
+        }
+        return proxy;
+    }
+
+    private static boolean tryReserveBid(AtomicInteger count) {
+        int bids;
+        do {
+            bids = count.get();
+            if (bids >= MAX_BIDS_PER_BIDDER) return false;
+        } while (!count.compareAndSet(bids, bids + 1));
+        return true;
+    }
+    
+    // --- Journal replay and snapshots; only called while the auction is not yet visible to bidders ---
+
+    void replayBid(Bidder bidder, double amount, boolean counted, long timeMillis) {
+        recordBid(bidder, amount, timeMillis);
+        BidState current = state.get();
+        if (current.open && amount > current.amount) {
+            state.set(new BidState(amount, bidder, true));
+        }
+        if (counted) {
+            bidCounts.computeIfAbsent(bidder.getName(), name -> new AtomicInteger()).incrementAndGet();
+        }
+    }
+
+    // The bids a proxy produced are journaled separately, so replay only rebuilds the heap
+    void replayProxy(Bidder bidder, double maxAmount) {
+        synchronized (proxyLock) {
+            addProxy(bidder, maxAmount);
+        }
+        bidCounts.computeIfAbsent(bidder.getName(), name -> new AtomicInteger()).incrementAndGet();
+    }
+
+    void replayClose() {
+        BidState current = state.get();
+        state.set(new BidState(current.amount, current.bidder, false));
+        settled = true;
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        BidState current = state.get();
+        out.writeInt(id);
+        out.writeUTF(itemName);
+        out.writeDouble(startPrice);
+        out.writeLong(endsAtMillis);
+        out.writeDouble(current.amount);
+        out.writeUTF(current.bidder != null ? current.bidder.getName() : "");
+        out.writeBoolean(current.open);
+        Map<String, AtomicInteger> counts = new HashMap<>(bidCounts);
+        out.writeInt(counts.size());
+        for (Map.Entry<String, AtomicInteger> entry : counts.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue().get());
+        }
+        List<Proxy> live;
+        synchronized (proxyLock) {
+            live = new ArrayList<>(proxyByBidder.values());
+        }
+        live.sort(Comparator.comparingLong(proxy -> proxy.seq));
+        out.writeInt(live.size());
+        for (Proxy proxy : live) {
+            out.writeUTF(proxy.bidder.getName());
+            out.writeDouble(proxy.maxAmount);
+        }
+        // Either where the spilled history lives, or the ring itself
+        BidHistory bids = history;
+        long offset = historyOffset;
+        out.writeLong(bids == null ? offset : -1);
+        out.writeBoolean(bids != null);
+        if (bids != null) bids.writeTo(out);
+        out.writeBoolean(settled);
+    }
+
+    static Auction readFrom(DataInputStream in, Function<String, Bidder> bidders, AuctionManager manager, int format) throws IOException {
+        int id = in.readInt();
+        String itemName = in.readUTF();
+        double startPrice = in.readDouble();
+        long endsAtMillis = in.readLong();
+        Auction auction = new Auction(id, itemName, startPrice, endsAtMillis, manager);
+        double amount = in.readDouble();
+        String bidderName = in.readUTF();
+        boolean open = in.readBoolean();
+        Bidder bidder = bidderName.isEmpty() ? null : bidders.apply(bidderName);
+        auction.state.set(new BidState(amount, bidder, open));
+        int countCount = in.readInt();
+        for (int i = 0; i < countCount; i++) {
+            auction.bidCounts.put(in.readUTF(), new AtomicInteger(in.readInt()));
+        }
+        int proxyCount = in.readInt();
+        for (int i = 0; i < proxyCount; i++) {
+            Bidder proxyBidder = bidders.apply(in.readUTF());
+            auction.addProxy(proxyBidder, in.readDouble());
+        }
+        if (format >= 3) {
+            auction.historyOffset = in.readLong();
+            if (in.readBoolean()) {
+                auction.history = BidHistory.readFrom(in);
+            }
+        }
+        // Before format 4 an auction was settled in the same step that closed it
+        auction.settled = format >= 4 ? in.readBoolean() : !open;
+        return auction;
+    }
+    
+    public String toJson() {
+        JsonWriter out = new JsonWriter(160);
+        writeJson(out);
+        return out.toString();
+    }
+
+    void writeJson(JsonWriter out) {
+        BidState current = state.get();
+        out.raw("{\"id\":").number(id)
+           .raw(", \"itemName\":").string(itemName)
+           .raw(", \"highestBid\":").money(current.amount)
+           .raw(", \"highestBidder\":").string(current.bidderName())
+           .raw(", \"endsAt\":").number(endsAtMillis)
+           .raw(", \"status\":").string(getStatus())
+           .raw('}');
+    }
+
+    /**
+     * Immutable (amount, bidder, open) triple swapped atomically by the bid and expiry paths. Each
+     * one also stands for the change that produced it, which emit journals and publishes.
+     */
+    private static final class BidState {
+        static final byte SETTLED = 0, BID = 1, PROXY_BID = 2, PROXY = 3, CLOSE = 4;
+
+        final double amount;
+        final Bidder bidder;
+        final boolean open;
+        final byte kind;
+        // For a proxy registration, whose maximum it was
+        final Bidder registrant;
+        final double maximum;
+
+        // Only the emitting thread follows or clears these: the state this one replaced, until this
+        // one is out, and the pending change after it
+        BidState previous;
+        BidState next;
+        long journalSeq;
+        // Written after journalSeq, once the change has been journaled and published
+        volatile boolean emitted;
+
+        // A state with nothing left to emit: the starting one, or one rebuilt by replay
+        BidState(double amount, Bidder bidder, boolean open) {
+            this(null, amount, bidder, open, SETTLED, null, 0);
+            this.emitted = true;
+        }
+
+        BidState(BidState previous, double amount, Bidder bidder, boolean open, byte kind) {
+            this(previous, amount, bidder, open, kind, null, 0);
+        }
+
+        private BidState(BidState previous, double amount, Bidder bidder, boolean open, byte kind,
+                         Bidder registrant, double maximum) {
+            this.previous = previous;
+            this.amount = amount;
+            this.bidder = bidder;
+            this.open = open;
+            this.kind = kind;
+            this.registrant = registrant;
+            this.maximum = maximum;
+        }
+
+        static BidState registration(BidState current, Bidder registrant, double maximum) {
+            return new BidState(current, current.amount, current.bidder, current.open, PROXY, registrant, maximum);
+        }
+
+        String bidderName() { return bidder != null ? bidder.getName() : "None"; }
+    }
+
+    /** A bidder's standing maximum; ordered highest first, earliest registration winning ties. */
+    private static final class Proxy implements Comparable<Proxy> {
+        final Bidder bidder;
+        final double maxAmount;
+        final long seq;
+        boolean superseded;
+
+        Proxy(Bidder bidder, double maxAmount, long seq) {
+            this.bidder = bidder;
+            this.maxAmount = maxAmount;
+            this.seq = seq;
+        }
+
+        @Override
+        public int compareTo(Proxy other) {
+            int byMax = Double.compare(other.maxAmount, maxAmount);
+            return byMax != 0 ? byMax : Long.compare(seq, other.seq);
+        }
+    }
+}
+
+class Bidder {
+    private static final int[] NO_INTS = new int[0];
+    private static final long[] NO_LONGS = new long[0];
+    private static final String[] NO_STRINGS = new String[0];
+
+    private final String name;
+    private volatile double wallet = 10000.00;
+    // Append-only win log in parallel arrays, guarded by this bidder's monitor. A win's index is its
+    // sequence number, and the count doubles as the version clients pass back to fetch only newer wins.
+    // Item names are the auction's own String, not copies.
+    private int winCount;
+    private int[] winAuctionIds = NO_INTS;
+    private String[] winItemNames = NO_STRINGS;
+    private long[] winCostCents = NO_LONGS;
+    private long[] winTimes = NO_LONGS;
+    // Open-addressed with linear probing, twice the log's capacity: seq + 1 of the newest win of the
+    // auction hashed there, or 0 for an empty slot; lets a remote charge find its win without a scan
+    private int[] winIndex = NO_INTS;
+
+    public Bidder(String name) { this.name = name; }
+    public String getName() { return name; }
+    public double getWallet() { return wallet; }
+
+    // Returns the win's sequence number, or -1 if the wallet did not cover the cost
+    public synchronized int winAuction(int auctionId, String itemName, double cost, long wonAtMillis) {
+        if (wallet >= cost) {
+            return replayWin(auctionId, itemName, cost, wonAtMillis);
+        }
+        return -1;
+    }
+
+    // Journal replay debits unconditionally: the funds check already passed when the win happened
+    synchronized int replayWin(int auctionId, String itemName, double cost, long wonAtMillis) {
+        wallet -= cost;
+        if (winCount == winAuctionIds.length) {
+            int capacity = Math.max(4, winCount * 2);
+            winAuctionIds = Arrays.copyOf(winAuctionIds, capacity);
+            winItemNames = Arrays.copyOf(winItemNames, capacity);
+            winCostCents = Arrays.copyOf(winCostCents, capacity);
+            winTimes = Arrays.copyOf(winTimes, capacity);
+            winIndex = new int[capacity * 2];
+            for (int seq = 0; seq < winCount; seq++) indexWin(seq);
+        }
+        winAuctionIds[winCount] = auctionId;
+        winItemNames[winCount] = itemName;
+        winCostCents[winCount] = Math.round(cost * 100);
+        winTimes[winCount] = wonAtMillis;
+        indexWin(winCount);
+        return winCount++;
+    }
+
+    // Points the auction's slot at this win, replacing an older win of the same auction
+    private void indexWin(int seq) {
+        int i = winSlot(winAuctionIds[seq]);
+        winIndex[i] = seq + 1;
+    }
+
+    // The slot holding the auction's win, or the empty one where it would go
+    private int winSlot(int auctionId) {
+        int mask = winIndex.length - 1;
+        int h = auctionId * 0x9E3779B9;
+        int i = (h ^ (h >>> 16)) & mask;
+        while (winIndex[i] != 0 && winAuctionIds[winIndex[i] - 1] != auctionId) i = (i + 1) & mask;
+        return i;
+    }
+
+    public synchronized int getWinCount() {
+        return winCount;
+    }
+
+    // The sequence number of this bidder's newest win of the auction, or -1
+    synchronized int findWin(int auctionId) {
+        if (winCount == 0) return -1;
+        return winIndex[winSlot(auctionId)] - 1;
+    }
+
+    // Another shard owns this wallet; keep the lowest balance it has reported, for the bid-time funds check
+    synchronized void observeWallet(double balance) {
+        if (balance < wallet) wallet = balance;
+    }
+
+    // After a snapshot restore, point item names back at the auctions' copies
+    synchronized void linkItemNames(AuctionIndex auctions) {
+        for (int i = 0; i < winCount; i++) {
+            Auction auction = auctions.get(winAuctionIds[i]);
+            if (auction != null) winItemNames[i] = auction.getItemName();
+        }
+    }
+
+    synchronized void writeTo(DataOutputStream out) throws IOException {
+        out.writeUTF(name);
+        out.writeDouble(wallet);
+        out.writeInt(winCount);
+        for (int i = 0; i < winCount; i++) {
+            out.writeInt(winAuctionIds[i]);
+            out.writeUTF(winItemNames[i]);
+            out.writeLong(winCostCents[i]);
+            out.writeLong(winTimes[i]);
+        }
+    }
+
+    // Snapshots before format 2 kept only the item name and cost of each win
+    static Bidder readFrom(DataInputStream in, int format) throws IOException {
+        Bidder bidder = new Bidder(in.readUTF());
+        double wallet = in.readDouble();
+        int wonCount = in.readInt();
+        for (int i = 0; i < wonCount; i++) {
+            if (format >= 2) {
+                int auctionId = in.readInt();
+                String itemName = in.readUTF();
+                long cents = in.readLong();
+                bidder.replayWin(auctionId, itemName, cents / 100.0, in.readLong());
+            } else {
+                bidder.replayWin(0, in.readUTF(), in.readDouble(), 0);
+            }
+        }
+        bidder.wallet = wallet;
+        return bidder;
+    }
+
+    /** Wins from sequence number since onward, at most limit of them: {"version", "next", "wins"}. */
+    synchronized void writeWinsJson(int since, int limit, JsonWriter out) {
+        int from = Math.min(Math.max(since, 0), winCount);
+        int to = (int) Math.min((long) from + Math.max(limit, 0), winCount);
+        out.raw("{\"version\":").number(winCount).raw(", \"next\":").number(to).raw(", \"wins\":[");
+        for (int i = from; i < to; i++) {
+            if (i > from) out.raw(", ");
+            writeWin(i, out);
+        }
+        out.raw("]}");
+    }
+
+    synchronized String winJson(int seq) {
+        JsonWriter out = new JsonWriter(128);
+        writeWin(seq, out);
+        return out.toString();
+    }
+
+    private void writeWin(int i, JsonWriter out) {
+        out.raw("{\"seq\":").number(i)
+           .raw(", \"auctionId\":").number(winAuctionIds[i])
+           .raw(", \"itemName\":").string(winItemNames[i])
+           .raw(", \"cost\":").cents(winCostCents[i])
+           .raw(", \"wonAt\":").number(winTimes[i])
+           .raw('}');
+    }
+    
+    public String toJson() {
+        JsonWriter out = new JsonWriter(96);
+        writeJson(out);
+        return out.toString();
+    }
+
+    void writeJson(JsonWriter out) {
+        out.raw("{\"name\":").string(name).raw(", \"wallet\":").money(wallet).raw('}');
+    }
+}
@@ -0,0 +1,124 @@
+package auctionaire;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Admin table of the manager's live auctions. Row i keeps showing the same auction until that
+ * auction is archived, and refresh() (called on the EDT after auction events and once a second)
+ * only fires events for rows that were added, removed or changed.
+ */
+class AuctionTableModel extends AbstractTableModel {
+    private static final String[] COLUMN_NAMES = {"ID", "Item Name", "Start Price", "Highest Bid", "Highest Bidder", "Time Left", "Status", "Action"};
+
+    private final AuctionManager auctionManager;
+    private final List<Row> rows = new ArrayList<>();
+
+    AuctionTableModel(AuctionManager auctionManager) {
+        this.auctionManager = auctionManager;
+    }
+
+    public Auction getAuctionAt(int row) {
+        return rows.get(row).auction;
+    }
+
+    /** Drops archived auctions, picks up new ones and re-reads the rest, firing one event per run of changed rows. */
+    public void refresh() {
+        // Rows and live auctions are both in id order; merge them, dropping rows for archived auctions
+        List<Auction> live = auctionManager.getLiveAuctions();
+        int next = 0;
+        for (int i = 0; i < rows.size() || next < live.size(); ) {
+            int rowId = i < rows.size() ? rows.get(i).auction.getId() : Integer.MAX_VALUE;
+            int liveId = next < live.size() ? live.get(next).getId() : Integer.MAX_VALUE;
+            if (rowId == liveId) {
+                i++;
+                next++;
+            } else if (rowId < liveId) {
+                rows.remove(i);
+                fireTableRowsDeleted(i, i);
+            } else {
+                rows.add(i, new Row(live.get(next++)));
+                fireTableRowsInserted(i, i);
+                i++;
+            }
+        }
+
+        int firstChanged = -1;
+        for (int i = 0; i < rows.size(); i++) {
+            boolean changed = rows.get(i).update();
+            if (changed && firstChanged < 0) {
+                firstChanged = i;
+            } else if (!changed && firstChanged >= 0) {
+                fireTableRowsUpdated(firstChanged, i - 1);
+                firstChanged = -1;
+            }
+        }
+        if (firstChanged >= 0) {
+            fireTableRowsUpdated(firstChanged, rows.size() - 1);
+        }
+    }
+
+    @Override
+    public int getRowCount() { return rows.size(); }
+
+    @Override
+    public int getColumnCount() { return COLUMN_NAMES.length; }
+
+    @Override
+    public String getColumnName(int column) { return COLUMN_NAMES[column]; }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return column == getColumnCount() - 1;
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        Row row = rows.get(rowIndex);
+        switch (columnIndex) {
+            case 0: return row.auction.getId();
+            case 1: return row.auction.getItemName();
+            case 2: return String.format(Locale.US, "%.2f", row.auction.getStartPrice());
+            case 3: return String.format(Locale.US, "%.2f", row.highestBid);
+            case 4: return row.highestBidder;
+            case 5: return row.remainingTime;
+            case 6: return row.status;
+            case 7: return row.active ? "Stop" : "";
+            default: throw new IndexOutOfBoundsException("column " + columnIndex);
+        }
+    }
+
+    // Last values shown for one auction; ended auctions never change again
+    private static final class Row {
+        final Auction auction;
+        double highestBid;
+        String highestBidder;
+        int remainingTime;
+        String status;
+        boolean active = true;
+
+        Row(Auction auction) {
+            this.auction = auction;
+            update();
+        }
+
+        boolean update() {
+            if (!active) return false;
+            double bid = auction.getHighestBid();
+            String bidder = auction.getHighestBidderName();
+            int remaining = auction.getRemainingTime();
+            boolean nowActive = auction.isActive();
+            if (bid == highestBid && bidder.equals(highestBidder) && remaining == remainingTime && nowActive) {
+                return false;
+            }
+            highestBid = bid;
+            highestBidder = bidder;
+            remainingTime = remaining;
+            active = nowActive;
+            status = auction.getStatus();
+            return true;
+        }
+    }
+}
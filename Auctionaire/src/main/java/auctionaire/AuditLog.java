@@ -0,0 +1,113 @@
+package auctionaire;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Audit trail of auction events, one JSON object per line, appended across restarts. Runs as an
+ * event handler after settlement: each batch is encoded into one buffer and written with a single
+ * write and flush, so nothing on the bid or expiry paths touches the file or the console.
+ */
+final class AuditLog implements AuctionEvents.Handler {
+    private final OutputStream out;
+    private final String target;
+    private boolean failed;
+
+    AuditLog(OutputStream out, String target) {
+        this.out = out;
+        this.target = target;
+    }
+
+    // "-" sends the lines to standard output instead of a file
+    static AuditLog fromConfig(ServerConfig config) {
+        if (!config.getBoolean("auction.audit.enabled", true)) {
+            return null;
+        }
+        String file = config.get("auction.audit.file",
+            Paths.get(config.get("auction.journal.dir", "auction-data"), "audit.log").toString());
+        if (file.equals("-")) {
+            return new AuditLog(System.out, "standard output");
+        }
+        Path path = Paths.get(file);
+        try {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            return new AuditLog(new FileOutputStream(path.toFile(), true), path.toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open audit log " + path, e);
+        }
+    }
+
+    @Override
+    public void onBatch(AuctionEvents.Batch batch) {
+        try (JsonWriter json = JsonWriter.acquire()) {
+            for (int i = 0; i < batch.size(); i++) {
+                writeEvent(batch.get(i), json);
+            }
+            json.writeTo(out);
+            out.flush();
+            failed = false;
+        } catch (IOException e) {
+            // Reported once per outage; the journal still has everything that matters for recovery
+            if (!failed) System.out.println("LOG: Could not write audit log to " + target + ": " + e);
+            failed = true;
+        }
+    }
+
+    private static void writeEvent(AuctionEvents.Event event, JsonWriter json) {
+        Auction auction = event.auction;
+        switch (event.type) {
+            case CREATED:
+                start(json, event, "created")
+                    .raw(", \"itemName\":").string(auction.getItemName())
+                    .raw(", \"startPrice\":").money(event.amount)
+                    .raw(", \"endsAt\":").number(auction.getEndsAtMillis());
+                break;
+            case BID:
+                start(json, event, "bid")
+                    .raw(", \"bidder\":").string(event.bidder.getName())
+                    .raw(", \"amount\":").money(event.amount)
+                    .raw(", \"proxy\":").raw(event.proxy ? "true" : "false");
+                break;
+            case STOPPED:
+                start(json, event, "stopped");
+                break;
+            case ENDED:
+                start(json, event, "ended")
+                    .raw(", \"itemName\":").string(auction.getItemName())
+                    .raw(", \"winner\":");
+                winner(json, event).raw(", \"amount\":").money(event.amount);
+                if (event.settled && event.bidder != null) {
+                    json.raw("}\n");
+                    settled(json, event);
+                }
+                break;
+            case SETTLED:
+                settled(json, event);
+                break;
+            default:
+                throw new IllegalArgumentException("event " + event.type);
+        }
+        json.raw("}\n");
+    }
+
+    private static void settled(JsonWriter json, AuctionEvents.Event event) {
+        start(json, event, "settled").raw(", \"winner\":");
+        winner(json, event).raw(", \"amount\":").money(event.amount)
+            .raw(", \"paid\":").raw(event.winSeq >= 0 ? "true" : "false");
+    }
+
+    private static JsonWriter start(JsonWriter json, AuctionEvents.Event event, String name) {
+        return json.raw("{\"time\":").number(event.timeMillis)
+                   .raw(", \"event\":\"").raw(name).raw('"')
+                   .raw(", \"auctionId\":").number(event.auction.getId());
+    }
+
+    private static JsonWriter winner(JsonWriter json, AuctionEvents.Event event) {
+        return event.bidder != null ? json.string(event.bidder.getName()) : json.raw("null");
+    }
+}
@@ -0,0 +1,236 @@
+package auctionaire;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * The newest accepted bids of one auction in a fixed-size ring of parallel arrays. Recording
+ * writes three slots and never allocates; once the ring is full the oldest bid drops out, so
+ * the bids kept per auction are bounded by the capacity however many arrive. Every bid gets a
+ * sequence number, and total counts all of them, including those no longer retained.
+ *
+ * <p>Bidders are kept as small ids into this auction's own name table rather than as references.
+ * The table is sized with the ring, since a name is only needed while some retained bid uses it:
+ * each id counts the bids that use it and is freed once the last of them drops out, so no bidder
+ * ever makes recording allocate. Bids are recorded by one thread at a time (the one emitting the
+ * auction's changes, or replay before it is visible), in the order they were accepted, so amounts
+ * only ever rise. Readers take no lock: they copy the bids they want, names included, and drop any
+ * whose slot the recording thread reused meanwhile; an id is only reused after that.
+ */
+final class BidHistory {
+    private final double[] amounts;
+    // -1 for a slot no bid has used yet
+    private final int[] bidderIds;
+    private final long[] times;
+    // Names by id, and how many retained bids use each; a free id has no name
+    private final String[] names;
+    private final int[] uses;
+    private final int[] freeIds;
+    private int freeCount;
+    // Open-addressed with linear probing: id + 1 of the name hashed there, or 0 for an empty slot
+    private final int[] nameIndex;
+    // Sequence number of the bid last started; total moves past it once the bid is complete
+    private volatile long writing = -1;
+    private volatile long total;
+
+    BidHistory(int capacity) {
+        this.amounts = new double[capacity];
+        this.bidderIds = new int[capacity];
+        Arrays.fill(bidderIds, -1);
+        this.times = new long[capacity];
+        this.names = new String[capacity];
+        this.uses = new int[capacity];
+        this.freeIds = new int[capacity];
+        for (int id = 0; id < capacity; id++) freeIds[id] = capacity - 1 - id;
+        this.freeCount = capacity;
+        // At most half full, so probes stay short
+        this.nameIndex = new int[Integer.highestOneBit(Math.max(capacity, 1)) << 2];
+    }
+
+    /** Only from the thread emitting the auction's changes, or from replay. */
+    void record(String bidderName, double amount, long timeMillis) {
+        long seq = total;
+        writing = seq;
+        // Readers must not see the slot or a name change before they can see writing move
+        VarHandle.storeStoreFence();
+        int slot = slot(seq);
+        // The bid dropping out gives up its name first, so a full table always has an id for the new one
+        if (bidderIds[slot] >= 0) release(bidderIds[slot]);
+        int bidderId = acquire(bidderName);
+        amounts[slot] = amount;
+        bidderIds[slot] = bidderId;
+        times[slot] = timeMillis;
+        total = seq + 1;
+    }
+
+    long getTotal() {
+        return total;
+    }
+
+    /**
+     * Up to limit bids with sequence numbers below before, newest first:
+     * {"auctionId", "total", "next", "bids"}, where next is the before for the following page or null.
+     */
+    void writePageJson(int auctionId, long before, int limit, JsonWriter out) {
+        long total = this.total;
+        long from = Math.min(before, total) - 1;
+        Copy page = copy(Math.max(firstRetained(total), from - Math.max(limit, 0) + 1), from + 1);
+        out.raw("{\"auctionId\":").number(auctionId).raw(", \"total\":").number(total).raw(", \"next\":");
+        if (page.count > 0 && page.first > firstRetained(total)) {
+            out.number(page.first);
+        } else {
+            out.raw("null");
+        }
+        out.raw(", \"bids\":[");
+        for (int i = page.count - 1; i >= 0; i--) {
+            if (i != page.count - 1) out.raw(", ");
+            out.raw("{\"seq\":").number(page.first + i)
+               .raw(", \"bidder\":").string(page.names[i])
+               .raw(", \"amount\":").money(page.amounts[i])
+               .raw(", \"time\":").number(page.times[i])
+               .raw('}');
+        }
+        out.raw("]}");
+    }
+
+    /** Retained bids oldest first, with bidder names dictionary-coded; the spill and snapshot format. */
+    void writeTo(DataOutputStream out) throws IOException {
+        long total = this.total;
+        Copy retained = copy(firstRetained(total), total);
+        // Renumbered densely; bids with the same id are intact, so they share a name
+        int[] written = new int[names.length];
+        Arrays.fill(written, -1);
+        int nameCount = 0;
+        for (int i = 0; i < retained.count; i++) {
+            if (written[retained.bidderIds[i]] < 0) written[retained.bidderIds[i]] = nameCount++;
+        }
+
+        out.writeInt(amounts.length);
+        out.writeLong(retained.first + retained.count);
+        out.writeInt(retained.count);
+        out.writeInt(nameCount);
+        String[] byWritten = new String[nameCount];
+        for (int i = 0; i < retained.count; i++) byWritten[written[retained.bidderIds[i]]] = retained.names[i];
+        for (String name : byWritten) out.writeUTF(name);
+        for (int i = 0; i < retained.count; i++) {
+            out.writeInt(written[retained.bidderIds[i]]);
+            out.writeDouble(retained.amounts[i]);
+            out.writeLong(retained.times[i]);
+        }
+    }
+
+    static BidHistory readFrom(DataInputStream in) throws IOException {
+        int capacity = in.readInt();
+        long total = in.readLong();
+        int retained = in.readInt();
+        String[] names = new String[in.readInt()];
+        for (int i = 0; i < names.length; i++) names[i] = in.readUTF();
+        BidHistory history = new BidHistory(Math.max(capacity, retained));
+        history.total = total - retained;
+        for (int i = 0; i < retained; i++) {
+            String bidderName = names[in.readInt()];
+            double amount = in.readDouble();
+            history.record(bidderName, amount, in.readLong());
+        }
+        return history;
+    }
+
+    // The name's id, taking a free one for a name no retained bid uses
+    private int acquire(String name) {
+        int mask = nameIndex.length - 1;
+        int i = hash(name) & mask;
+        for (int entry; (entry = nameIndex[i]) != 0; i = (i + 1) & mask) {
+            if (name.equals(names[entry - 1])) {
+                uses[entry - 1]++;
+                return entry - 1;
+            }
+        }
+        int id = freeIds[--freeCount];
+        names[id] = name;
+        uses[id] = 1;
+        nameIndex[i] = id + 1;
+        return id;
+    }
+
+    private void release(int id) {
+        if (--uses[id] > 0) return;
+        int mask = nameIndex.length - 1;
+        int i = hash(names[id]) & mask;
+        while (nameIndex[i] != id + 1) i = (i + 1) & mask;
+        // Later entries of the probe run move back into the gap, so lookups never stop short of them
+        for (int next = (i + 1) & mask; nameIndex[next] != 0; next = (next + 1) & mask) {
+            int home = hash(names[nameIndex[next] - 1]) & mask;
+            if (((next - home) & mask) >= ((next - i) & mask)) {
+                nameIndex[i] = nameIndex[next];
+                i = next;
+            }
+        }
+        nameIndex[i] = 0;
+        names[id] = null;
+        freeIds[freeCount++] = id;
+    }
+
+    // Spreads the high bits down, as HashMap does, since names often differ only in a trailing counter
+    private static int hash(String name) {
+        int h = name.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /** Bids first (inclusive) to end (exclusive), minus any at the old end that were overwritten while copying. */
+    private Copy copy(long first, long end) {
+        int count = (int) Math.max(0, end - first);
+        Copy copy = new Copy(count);
+        for (int i = 0; i < count; i++) {
+            int slot = slot(first + i);
+            copy.amounts[i] = amounts[slot];
+            copy.bidderIds[i] = bidderIds[slot];
+            copy.times[i] = times[slot];
+        }
+        // Named before checking, so a name freed and reused meanwhile shows up as a torn bid
+        VarHandle.loadLoadFence();
+        for (int i = 0; i < count; i++) {
+            int id = copy.bidderIds[i];
+            copy.names[i] = id < 0 ? null : names[id];
+        }
+        // A bid is intact unless the recording thread has since started on the one that reuses its slot
+        VarHandle.loadLoadFence();
+        long reused = writing - amounts.length;
+        int torn = (int) Math.min(count, Math.max(0, reused - first + 1));
+        copy.first = first + torn;
+        copy.count = count - torn;
+        if (torn > 0) {
+            System.arraycopy(copy.amounts, torn, copy.amounts, 0, copy.count);
+            System.arraycopy(copy.bidderIds, torn, copy.bidderIds, 0, copy.count);
+            System.arraycopy(copy.times, torn, copy.times, 0, copy.count);
+            System.arraycopy(copy.names, torn, copy.names, 0, copy.count);
+        }
+        return copy;
+    }
+
+    private long firstRetained(long total) {
+        return Math.max(0, total - amounts.length);
+    }
+
+    private int slot(long seq) {
+        return (int) (seq % amounts.length);
+    }
+
+    private static final class Copy {
+        final double[] amounts;
+        final int[] bidderIds;
+        final long[] times;
+        final String[] names;
+        long first;
+        int count;
+
+        Copy(int capacity) {
+            amounts = new double[capacity];
+            bidderIds = new int[capacity];
+            times = new long[capacity];
+            names = new String[capacity];
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package auctionaire;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Append-only file of closed auctions' bid histories. Closing an auction queues its ring for a
+ * background writer; once the record is on disk the auction keeps only its file offset and
+ * the ring is released. Each record holds the BidHistory.writeTo bytes.
+ */
+class BidHistoryStore {
+    static final int DEFAULT_CAPACITY = 128;
+
+    private final RecordFile file;
+    private final int capacity;
+    private final ExecutorService writer;
+
+    BidHistoryStore(Path file, int capacity, boolean keepExisting) throws IOException {
+        this.file = new RecordFile(file, keepExisting);
+        this.capacity = capacity;
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bid-history-spill");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Offsets in the file are only meaningful to a journal snapshot; without one, start from empty
+    static BidHistoryStore fromConfig(ServerConfig config) {
+        if (!config.getBoolean("auction.history.spill", true)) {
+            return null;
+        }
+        Path file = Paths.get(config.get("auction.history.file",
+            Paths.get(config.get("auction.journal.dir", "auction-data"), "bid-history.dat").toString()));
+        try {
+            return new BidHistoryStore(file, config.getInt("auction.history.capacity", DEFAULT_CAPACITY),
+                                       config.getBoolean("auction.journal.enabled", true));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open bid history file " + file, e);
+        }
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    /** Writes the auction's history in the background, then hands the ring back for collection. */
+    void spill(Auction auction) {
+        writer.execute(() -> {
+            try {
+                spillNow(auction);
+            } catch (IOException e) {
+                // The ring stays in memory and keeps serving the history
+                System.out.println("LOG: Could not spill bid history of auction " + auction.getId() + ": " + e);
+            }
+        });
+    }
+
+    /** Same as spill, on the calling thread; a no-op if the auction has no ring in memory. */
+    void spillNow(Auction auction) throws IOException {
+        BidHistory history = auction.getBidHistory();
+        if (history == null) return;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            history.writeTo(out);
+        }
+        auction.onHistorySpilled(file.append(buffer.toByteArray()));
+    }
+
+    BidHistory read(long offset) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(file.read(offset)))) {
+            return BidHistory.readFrom(in);
+        }
+    }
+}
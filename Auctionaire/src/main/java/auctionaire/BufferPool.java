@@ -0,0 +1,43 @@
+package auctionaire;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * A small, bounded stock of reusable buffers shared by every thread. A handler takes one for the
+ * length of its exchange and hands it back, so reuse does not depend on the thread outliving the
+ * request, as a ThreadLocal's would under virtual threads. An empty stock makes a fresh buffer and a
+ * full one drops what is handed back, so neither side ever waits.
+ */
+final class BufferPool<T> {
+    // Buffers are only held while an exchange is being decoded or encoded, so a few per core suffice
+    private static final int SLOTS = Integer.highestOneBit(Math.max(Runtime.getRuntime().availableProcessors() * 4, 16) - 1) << 1;
+
+    private final AtomicReferenceArray<T> slots = new AtomicReferenceArray<>(SLOTS);
+    private final Supplier<T> factory;
+
+    BufferPool(Supplier<T> factory) {
+        this.factory = factory;
+    }
+
+    /** A buffer no other thread holds until it is released. */
+    T acquire() {
+        int start = ThreadLocalRandom.current().nextInt();
+        for (int i = 0; i < SLOTS; i++) {
+            int slot = (start + i) & (SLOTS - 1);
+            T item = slots.get(slot);
+            if (item != null && slots.compareAndSet(slot, item, null)) return item;
+        }
+        return factory.get();
+    }
+
+    /** Hands a buffer back; the caller must not touch it afterwards. */
+    void release(T item) {
+        int start = ThreadLocalRandom.current().nextInt();
+        for (int i = 0; i < SLOTS; i++) {
+            int slot = (start + i) & (SLOTS - 1);
+            if (slots.get(slot) == null && slots.compareAndSet(slot, null, item)) return;
+        }
+    }
+}
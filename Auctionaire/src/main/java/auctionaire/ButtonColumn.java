@@ -1,3 +1,5 @@
+package auctionaire;
+
 import java.awt.*;
 import java.awt.event.*;
 import javax.swing.*;
@@ -0,0 +1,281 @@
+package auctionaire;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Decoding of application/x-www-form-urlencoded bodies and URL query strings. */
+final class FormCodec {
+    private static final BufferPool<Form> FORMS = new BufferPool<>(Form::new);
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15};
+
+    private FormCodec() {}
+
+    // **FIXED:** Error handling for unsupported encoding is now robust
+    static Map<String, String> parseQuery(String query) {
+        Map<String, String> result = new HashMap<>();
+        if (query != null) {
+            for (String param : query.split("&")) {
+                String[] entry = param.split("=");
+                if (entry.length > 1) {
+                    try {
+                        result.put(URLDecoder.decode(entry[0], "UTF-8"), URLDecoder.decode(entry[1], "UTF-8"));
+                    } catch (UnsupportedEncodingException e) {
+                        // This should never happen with UTF-8, but if it does, it's a critical environment error.
+                        throw new RuntimeException("FATAL: UTF-8 encoding not supported", e);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads a form body into a pooled Form. Returns null if the body is longer than maxBytes; a Form
+     * that came back may still have too many fields. The caller closes it, which hands it back to the pool.
+     */
+    static Form readBody(InputStream in, int maxBytes) throws IOException {
+        Form form = FORMS.acquire();
+        if (form.read(in, maxBytes)) return form;
+        form.close();
+        return null;
+    }
+
+    /** Parses a raw (still percent-encoded) query string into a pooled Form, which may have too many fields; close it when done. */
+    static Form readQuery(String rawQuery) {
+        Form form = FORMS.acquire();
+        form.read(rawQuery);
+        return form;
+    }
+
+    /** Parses a decimal with an optional sign and fraction; anything fancier falls back to Double.parseDouble. */
+    static double parseDouble(byte[] bytes, int from, int to) {
+        int i = from;
+        boolean negative = i < to && bytes[i] == '-';
+        if (negative || (i < to && bytes[i] == '+')) i++;
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        for (; i < to; i++) {
+            byte b = bytes[i];
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                if (scale >= 0) scale++;
+                if (++digits > 15) break;
+            } else if (b == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                break;
+            }
+        }
+        if (i != to || digits == 0) {
+            // Exponents, NaN, long fractions: rare enough to take the slow path
+            return Double.parseDouble(new String(bytes, from, to - from, StandardCharsets.ISO_8859_1));
+        }
+        // Both operands are exact doubles, so one division rounds exactly like parseDouble
+        double value = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+        return negative ? -value : value;
+    }
+
+    static int parseInt(byte[] bytes, int from, int to) {
+        int i = from;
+        boolean negative = i < to && bytes[i] == '-';
+        if (negative) i++;
+        if (i == to || to - i > 9) {
+            return Integer.parseInt(new String(bytes, from, to - from, StandardCharsets.ISO_8859_1));
+        }
+        int value = 0;
+        for (; i < to; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Not a number: " + new String(bytes, from, to - from, StandardCharsets.ISO_8859_1));
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    static long parseLong(byte[] bytes, int from, int to) {
+        int i = from;
+        boolean negative = i < to && bytes[i] == '-';
+        if (negative) i++;
+        if (i == to || to - i > 18) {
+            return Long.parseLong(new String(bytes, from, to - from, StandardCharsets.ISO_8859_1));
+        }
+        long value = 0;
+        for (; i < to; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Not a number: " + new String(bytes, from, to - from, StandardCharsets.ISO_8859_1));
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * One form's raw bytes plus the offsets of its fields. Values are percent-decoded on access, into a
+     * scratch buffer for numbers, so reading the usual bid fields allocates only the strings asked for.
+     * Field names are matched as sent; none of ours need escaping. Closing hands it back to the pool.
+     */
+    static final class Form implements AutoCloseable {
+        private static final int MAX_FIELDS = 32;
+        private static final int INITIAL_BYTES = 1024;
+        // A thread that once read a big batch does not keep the buffer forever
+        private static final int RETAINED_BYTES = 64 * 1024;
+
+        private byte[] data = new byte[INITIAL_BYTES];
+        private byte[] scratch = new byte[256];
+        private int length;
+        private final int[] keyStart = new int[MAX_FIELDS];
+        private final int[] keyEnd = new int[MAX_FIELDS];
+        private final int[] valueEnd = new int[MAX_FIELDS];
+        private int fields;
+        private boolean tooManyFields;
+
+        private Form() {}
+
+        private boolean read(InputStream in, int maxBytes) throws IOException {
+            if (data.length > RETAINED_BYTES) data = new byte[INITIAL_BYTES];
+            length = 0;
+            int n;
+            while ((n = in.read(data, length, data.length - length)) != -1) {
+                length += n;
+                if (length > maxBytes) return false;
+                // Room for one byte past the limit, so a body that runs over is caught rather than cut off
+                if (length == data.length) data = Arrays.copyOf(data, (int) Math.min(data.length * 2L, maxBytes + 1L));
+            }
+            index();
+            return true;
+        }
+
+        private void read(String rawQuery) {
+            if (data.length > RETAINED_BYTES) data = new byte[INITIAL_BYTES];
+            length = rawQuery == null ? 0 : rawQuery.length();
+            if (data.length < length) data = new byte[length];
+            for (int i = 0; i < length; i++) {
+                data[i] = (byte) rawQuery.charAt(i);
+            }
+            index();
+        }
+
+        // Records key and value boundaries; pairs without '=' or with an empty value are skipped, as parseQuery does
+        private void index() {
+            fields = 0;
+            tooManyFields = false;
+            int start = 0;
+            while (start < length) {
+                int end = start;
+                int equals = -1;
+                while (end < length && data[end] != '&') {
+                    if (equals < 0 && data[end] == '=') equals = end;
+                    end++;
+                }
+                if (equals > start && equals + 1 < end) {
+                    if (fields == MAX_FIELDS) {
+                        tooManyFields = true;
+                        return;
+                    }
+                    keyStart[fields] = start;
+                    keyEnd[fields] = equals;
+                    valueEnd[fields] = end;
+                    fields++;
+                }
+                start = end + 1;
+            }
+        }
+
+        // The last occurrence wins, matching a map built in order
+        private int find(String name) {
+            for (int f = fields - 1; f >= 0; f--) {
+                int start = keyStart[f];
+                if (keyEnd[f] - start != name.length()) continue;
+                int i = 0;
+                while (i < name.length() && data[start + i] == name.charAt(i)) i++;
+                if (i == name.length()) return f;
+            }
+            return -1;
+        }
+
+        /** More fields were sent than a form holds; the caller turns the request away rather than guess which count. */
+        boolean hasTooManyFields() {
+            return tooManyFields;
+        }
+
+        boolean has(String name) {
+            return find(name) >= 0;
+        }
+
+        String getString(String name) {
+            int n = decode(name);
+            return n < 0 ? null : new String(scratch, 0, n, StandardCharsets.UTF_8);
+        }
+
+        int getInt(String name, int missing) {
+            int n = decode(name);
+            return n < 0 ? missing : parseInt(scratch, 0, trimEnd(n));
+        }
+
+        long getLong(String name, long missing) {
+            int n = decode(name);
+            return n < 0 ? missing : parseLong(scratch, 0, trimEnd(n));
+        }
+
+        double getDouble(String name, double missing) {
+            int n = decode(name);
+            return n < 0 ? missing : parseDouble(scratch, 0, trimEnd(n));
+        }
+
+        /** Percent-decodes a value into scratch() and returns its length, or -1 if the field is absent. */
+        int decode(String name) {
+            int f = find(name);
+            if (f < 0) return -1;
+            int from = keyEnd[f] + 1;
+            int to = valueEnd[f];
+            if (scratch.length < to - from) scratch = new byte[Math.max(to - from, scratch.length * 2)];
+            int n = 0;
+            for (int i = from; i < to; i++) {
+                byte b = data[i];
+                if (b == '+') {
+                    b = ' ';
+                } else if (b == '%' && i + 2 < to && hex(data[i + 1]) >= 0 && hex(data[i + 2]) >= 0) {
+                    b = (byte) (hex(data[i + 1]) << 4 | hex(data[i + 2]));
+                    i += 2;
+                }
+                scratch[n++] = b;
+            }
+            return n;
+        }
+
+        byte[] scratch() {
+            return scratch;
+        }
+
+        /** A copy of the form exactly as it was read, for passing it on unchanged. */
+        byte[] toByteArray() {
+            return Arrays.copyOf(data, length);
+        }
+
+        @Override
+        public void close() {
+            FORMS.release(this);
+        }
+
+        private int trimEnd(int n) {
+            while (n > 0 && scratch[n - 1] == ' ') n--;
+            return n;
+        }
+
+        private static int hex(byte b) {
+            if (b >= '0' && b <= '9') return b - '0';
+            if (b >= 'a' && b <= 'f') return b - 'a' + 10;
+            if (b >= 'A' && b <= 'F') return b - 'A' + 10;
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package auctionaire;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Appends JSON straight into a growable UTF-8 byte buffer. Strings are escaped, so item and bidder
+ * names containing quotes or control characters cannot break the document. Handlers borrow a
+ * pooled writer with acquire(), copy the bytes to the response with writeTo and close it.
+ */
+final class JsonWriter implements AutoCloseable {
+    private static final BufferPool<JsonWriter> POOL = new BufferPool<>(() -> new JsonWriter(1024));
+    private static final int RETAINED_BYTES = 64 * 1024;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] buf;
+    private int size;
+
+    JsonWriter(int initialCapacity) {
+        this.buf = new byte[Math.max(initialCapacity, 16)];
+    }
+
+    /** An empty pooled writer; closing it hands it back. Callers pass it down rather than taking another. */
+    static JsonWriter acquire() {
+        JsonWriter writer = POOL.acquire();
+        if (writer.buf.length > RETAINED_BYTES) writer.buf = new byte[1024];
+        writer.size = 0;
+        return writer;
+    }
+
+    /** Appends ASCII text as is; for punctuation and field names. */
+    JsonWriter raw(String ascii) {
+        int n = ascii.length();
+        ensure(n);
+        for (int i = 0; i < n; i++) {
+            buf[size++] = (byte) ascii.charAt(i);
+        }
+        return this;
+    }
+
+    JsonWriter raw(char c) {
+        ensure(1);
+        buf[size++] = (byte) c;
+        return this;
+    }
+
+    JsonWriter raw(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buf, size, bytes.length);
+        size += bytes.length;
+        return this;
+    }
+
+    /** Appends a quoted, escaped string. */
+    JsonWriter string(String value) {
+        int n = value.length();
+        ensure(n + 2);
+        buf[size++] = '"';
+        for (int i = 0; i < n; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c == '"' || c == '\\') {
+                    ensure(2 + n - i);
+                    buf[size++] = '\\';
+                    buf[size++] = (byte) c;
+                } else if (c < 0x20) {
+                    ensure(6 + n - i);
+                    buf[size++] = '\\';
+                    buf[size++] = 'u';
+                    buf[size++] = '0';
+                    buf[size++] = '0';
+                    buf[size++] = HEX[c >> 4];
+                    buf[size++] = HEX[c & 0xF];
+                } else {
+                    buf[size++] = (byte) c;
+                }
+            } else {
+                ensure(4 + n - i);
+                if (c < 0x800) {
+                    buf[size++] = (byte) (0xC0 | c >> 6);
+                    buf[size++] = (byte) (0x80 | c & 0x3F);
+                } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, value.charAt(++i));
+                    buf[size++] = (byte) (0xF0 | cp >> 18);
+                    buf[size++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                    buf[size++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                    buf[size++] = (byte) (0x80 | cp & 0x3F);
+                } else if (Character.isSurrogate(c)) {
+                    // Unpaired surrogate: not encodable, same substitution String.getBytes makes
+                    buf[size++] = '?';
+                } else {
+                    buf[size++] = (byte) (0xE0 | c >> 12);
+                    buf[size++] = (byte) (0x80 | c >> 6 & 0x3F);
+                    buf[size++] = (byte) (0x80 | c & 0x3F);
+                }
+            }
+        }
+        ensure(1);
+        buf[size++] = '"';
+        return this;
+    }
+
+    JsonWriter number(long value) {
+        if (value == Long.MIN_VALUE) return raw(Long.toString(value));
+        ensure(20);
+        if (value < 0) {
+            buf[size++] = '-';
+            value = -value;
+        }
+        int start = size;
+        do {
+            buf[size++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        reverse(start, size - 1);
+        return this;
+    }
+
+    /** Appends an amount with two decimals, rounded to the nearest cent, as the old "%.2f" formats did. */
+    JsonWriter money(double amount) {
+        if (Double.isNaN(amount) || Double.isInfinite(amount) || Math.abs(amount) >= 1e15) {
+            return raw(String.format(Locale.US, "%.2f", amount));
+        }
+        return cents(Math.round(amount * 100));
+    }
+
+    /** Appends a whole number of cents as a two-decimal amount. */
+    JsonWriter cents(long cents) {
+        if (cents < 0) {
+            raw('-');
+            cents = -cents;
+        }
+        number(cents / 100);
+        ensure(3);
+        buf[size++] = '.';
+        buf[size++] = (byte) ('0' + cents % 100 / 10);
+        buf[size++] = (byte) ('0' + cents % 10);
+        return this;
+    }
+
+    int size() {
+        return size;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buf, size);
+    }
+
+    void writeTo(OutputStream out) throws IOException {
+        out.write(buf, 0, size);
+    }
+
+    @Override
+    public void close() {
+        POOL.release(this);
+    }
+
+    @Override
+    public String toString() {
+        return new String(buf, 0, size, StandardCharsets.UTF_8);
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + extra));
+        }
+    }
+
+    private void reverse(int from, int to) {
+        while (from < to) {
+            byte tmp = buf[from];
+            buf[from++] = buf[to];
+            buf[to--] = tmp;
+        }
+    }
+}
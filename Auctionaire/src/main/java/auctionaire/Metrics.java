@@ -0,0 +1,223 @@
+package auctionaire;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Server counters, gauges and latency histograms, rendered in the Prometheus text format.
+ * Recording only bumps LongAdders, which stripe themselves across contending threads,
+ * so the request path never locks or allocates.
+ */
+class Metrics {
+    // Histogram bucket upper bounds, shared by request latency and expiry lag
+    private static final double[] BOUNDS_SECONDS = {
+        0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5
+    };
+
+    private final LongAdder[] bids = newAdders(BidResult.values().length);
+    private final LongAdder[] endings = newAdders(Ending.values().length);
+    private final Histogram expiryLag = new Histogram();
+    private final List<Endpoint> endpoints = new CopyOnWriteArrayList<>();
+    private final List<Gauge> gauges = new CopyOnWriteArrayList<>();
+
+    enum Ending { SOLD, UNSOLD, UNPAID }
+
+    Metrics() {
+        // The process itself, so a long run shows heap growth or a thread leak
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        gauge("auctionaire_jvm_heap_used_bytes", "", "Heap in use", () -> memory.getHeapMemoryUsage().getUsed());
+        gauge("auctionaire_jvm_heap_max_bytes", "", "Largest the heap may grow", () -> memory.getHeapMemoryUsage().getMax());
+        gauge("auctionaire_jvm_threads", "", "Live threads", threads::getThreadCount);
+    }
+
+    /** Registers a handler's latency histogram and 503 counter; labels are rendered in registration order. */
+    Endpoint endpoint(String handler, boolean timed) {
+        Endpoint endpoint = new Endpoint(handler, timed);
+        endpoints.add(endpoint);
+        return endpoint;
+    }
+
+    void gauge(String name, String labels, String help, LongSupplier value) {
+        gauges.add(new Gauge(name, labels, help, value));
+    }
+
+    // Returns the result so call sites can record on the way out
+    BidResult recordBid(BidResult result) {
+        bids[result.ordinal()].increment();
+        return result;
+    }
+
+    void recordEnding(Ending ending) {
+        endings[ending.ordinal()].increment();
+    }
+
+    void recordExpiryLag(long nanos) {
+        expiryLag.record(Math.max(nanos, 0));
+    }
+
+    long getBidCount(BidResult result) {
+        return bids[result.ordinal()].sum();
+    }
+
+    Histogram getExpiryLag() {
+        return expiryLag;
+    }
+
+    List<Endpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    /** Sum of every gauge registered under this name, across labels. */
+    long getGaugeTotal(String name) {
+        long total = 0;
+        for (Gauge gauge : gauges) {
+            if (gauge.name.equals(name)) total += gauge.value.getAsLong();
+        }
+        return total;
+    }
+
+    String render() {
+        StringBuilder out = new StringBuilder(4096);
+
+        header(out, "auctionaire_http_request_duration_seconds", "histogram", "Time spent handling requests, by handler");
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.timed) {
+                endpoint.latency.render(out, "auctionaire_http_request_duration_seconds", "handler=\"" + endpoint.handler + "\"");
+            }
+        }
+        header(out, "auctionaire_http_rejected_total", "counter", "Requests answered 503 by admission control, by handler");
+        for (Endpoint endpoint : endpoints) {
+            sample(out, "auctionaire_http_rejected_total", "handler=\"" + endpoint.handler + "\"", endpoint.rejected.sum());
+        }
+
+        header(out, "auctionaire_bids_total", "counter", "Bids by outcome");
+        for (BidResult result : BidResult.values()) {
+            sample(out, "auctionaire_bids_total", "result=\"" + result.getCode() + "\"", bids[result.ordinal()].sum());
+        }
+        header(out, "auctionaire_auctions_ended_total", "counter", "Auctions ended, by settlement outcome");
+        for (Ending ending : Ending.values()) {
+            sample(out, "auctionaire_auctions_ended_total", "outcome=\"" + ending.name().toLowerCase() + "\"", endings[ending.ordinal()].sum());
+        }
+
+        header(out, "auctionaire_expiry_lag_seconds", "histogram", "Delay between an auction's deadline and its expiry firing");
+        expiryLag.render(out, "auctionaire_expiry_lag_seconds", "");
+
+        String previous = null;
+        for (Gauge gauge : gauges) {
+            if (!gauge.name.equals(previous)) {
+                header(out, gauge.name, "gauge", gauge.help);
+                previous = gauge.name;
+            }
+            sample(out, gauge.name, gauge.labels, gauge.value.getAsLong());
+        }
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, Object value) {
+        out.append(name);
+        if (!labels.isEmpty()) out.append('{').append(labels).append('}');
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static LongAdder[] newAdders(int n) {
+        LongAdder[] adders = new LongAdder[n];
+        for (int i = 0; i < n; i++) adders[i] = new LongAdder();
+        return adders;
+    }
+
+    /** Fixed-bucket histogram of durations; the last bucket catches everything above the top bound. */
+    static final class Histogram {
+        private static final long[] BOUNDS_NANOS = new long[BOUNDS_SECONDS.length];
+        static {
+            for (int i = 0; i < BOUNDS_SECONDS.length; i++) {
+                BOUNDS_NANOS[i] = (long) (BOUNDS_SECONDS[i] * TimeUnit.SECONDS.toNanos(1));
+            }
+        }
+
+        private final LongAdder[] counts = newAdders(BOUNDS_NANOS.length + 1);
+        private final LongAdder sumNanos = new LongAdder();
+
+        void record(long nanos) {
+            int i = 0;
+            while (i < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[i]) i++;
+            counts[i].increment();
+            sumNanos.add(nanos);
+        }
+
+        long getCount() {
+            long total = 0;
+            for (LongAdder count : counts) total += count.sum();
+            return total;
+        }
+
+        /** Upper bound of the bucket holding the given quantile, in seconds; infinite past the top bucket. */
+        double quantile(double q) {
+            long[] snapshot = new long[counts.length];
+            long total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                snapshot[i] = counts[i].sum();
+                total += snapshot[i];
+            }
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(q * total);
+            long seen = 0;
+            for (int i = 0; i < BOUNDS_SECONDS.length; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) return BOUNDS_SECONDS[i];
+            }
+            return Double.POSITIVE_INFINITY;
+        }
+
+        private void render(StringBuilder out, String name, String labels) {
+            String prefix = labels.isEmpty() ? "" : labels + ",";
+            long cumulative = 0;
+            for (int i = 0; i < BOUNDS_SECONDS.length; i++) {
+                cumulative += counts[i].sum();
+                sample(out, name + "_bucket", prefix + "le=\"" + BOUNDS_SECONDS[i] + "\"", cumulative);
+            }
+            cumulative += counts[BOUNDS_SECONDS.length].sum();
+            sample(out, name + "_bucket", prefix + "le=\"+Inf\"", cumulative);
+            sample(out, name + "_sum", labels, sumNanos.sum() / 1e9);
+            sample(out, name + "_count", labels, cumulative);
+        }
+    }
+
+    /** Per-handler request metrics. Long-lived handlers such as the event stream are counted but not timed. */
+    static final class Endpoint {
+        final String handler;
+        final Histogram latency = new Histogram();
+        final LongAdder rejected = new LongAdder();
+        final boolean timed;
+
+        private Endpoint(String handler, boolean timed) {
+            this.handler = handler;
+            this.timed = timed;
+        }
+    }
+
+    private static final class Gauge {
+        final String name;
+        final String labels;
+        final String help;
+        final LongSupplier value;
+
+        Gauge(String name, String labels, String help, LongSupplier value) {
+            this.name = name;
+            this.labels = labels;
+            this.help = help;
+            this.value = value;
+        }
+    }
+}
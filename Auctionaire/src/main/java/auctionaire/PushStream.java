@@ -0,0 +1,119 @@
+package auctionaire;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * Server-Sent Events fan-out. Every event is encoded once and the same bytes are queued
+ * for each interested subscriber; each subscriber's handler thread drains its own queue.
+ */
+class PushStream {
+    private static final int SUBSCRIBER_QUEUE_CAPACITY = 256;
+    // A router relays every shard event through one connection, so it gets far more room
+    private static final int FIREHOSE_QUEUE_CAPACITY = 1 << 14;
+    private static final long TIME_SYNC_SECONDS = 5;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    PushStream() {
+        ScheduledExecutorService timeSync = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "push-time-sync");
+            t.setDaemon(true);
+            return t;
+        });
+        timeSync.scheduleAtFixedRate(() -> {
+            if (!subscribers.isEmpty()) {
+                broadcast("time", "{\"serverTime\":" + System.currentTimeMillis() + "}");
+            }
+        }, TIME_SYNC_SECONDS, TIME_SYNC_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public Subscriber subscribe(String bidderName) {
+        Subscriber subscriber = new Subscriber(bidderName, false, SUBSCRIBER_QUEUE_CAPACITY);
+        subscribers.add(subscriber);
+        return subscriber;
+    }
+
+    /**
+     * Subscribes to every frame, including those sent to individual bidders; those carry an extra
+     * "to:" line with the URL-encoded bidder name so the reader can route them on.
+     */
+    public Subscriber subscribeAll() {
+        Subscriber subscriber = new Subscriber(null, true, FIREHOSE_QUEUE_CAPACITY);
+        subscribers.add(subscriber);
+        return subscriber;
+    }
+
+    public void unsubscribe(Subscriber subscriber) {
+        subscriber.closed = true;
+        subscribers.remove(subscriber);
+    }
+
+    /** Drops every subscriber; browsers reconnect and start again from a fresh snapshot. */
+    public void disconnectAll() {
+        for (Subscriber subscriber : subscribers) {
+            unsubscribe(subscriber);
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    public void broadcast(String event, String json) {
+        if (subscribers.isEmpty()) return;
+        byte[] frame = encode(event, json);
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(frame);
+        }
+    }
+
+    public void sendTo(String bidderName, String event, String json) {
+        byte[] frame = null;
+        byte[] addressed = null;
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.firehose) {
+                if (addressed == null) {
+                    addressed = ("event: " + event + "\nto: " + URLEncoder.encode(bidderName, StandardCharsets.UTF_8)
+                                 + "\ndata: " + json + "\n\n").getBytes(StandardCharsets.UTF_8);
+                }
+                subscriber.offer(addressed);
+            } else if (bidderName.equals(subscriber.bidderName)) {
+                if (frame == null) frame = encode(event, json);
+                subscriber.offer(frame);
+            }
+        }
+    }
+
+    static byte[] encode(String event, String json) {
+        return ("event: " + event + "\ndata: " + json + "\n\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    static final class Subscriber {
+        private final String bidderName;
+        private final boolean firehose;
+        private final BlockingQueue<byte[]> queue;
+        private volatile boolean closed;
+
+        private Subscriber(String bidderName, boolean firehose, int capacity) {
+            this.bidderName = bidderName;
+            this.firehose = firehose;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        public boolean isClosed() { return closed; }
+
+        // A subscriber that falls this far behind is dropped; the browser reconnects and resyncs
+        private void offer(byte[] frame) {
+            if (!queue.offer(frame)) {
+                closed = true;
+            }
+        }
+
+        public byte[] poll(long timeout, TimeUnit unit) throws InterruptedException {
+            return queue.poll(timeout, unit);
+        }
+    }
+}
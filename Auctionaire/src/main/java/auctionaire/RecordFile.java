@@ -0,0 +1,70 @@
+package auctionaire;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file of checksummed records, each [int length][int crc][payload], addressed by the
+ * offset append returned. Appends are forced to disk before the offset is handed out, because
+ * callers go on to record the offset somewhere that has to outlive a crash.
+ */
+final class RecordFile {
+    private final Path path;
+    private final FileChannel channel;
+    private long end;
+
+    RecordFile(Path path, boolean keepExisting) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        this.path = path;
+        this.channel = keepExisting
+            ? FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+            : FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                               StandardOpenOption.TRUNCATE_EXISTING);
+        this.end = channel.size();
+    }
+
+    synchronized long append(byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer bytes = ByteBuffer.allocate(8 + payload.length);
+        bytes.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        long offset = end;
+        while (bytes.hasRemaining()) {
+            channel.write(bytes, offset + bytes.position());
+        }
+        channel.force(false);
+        end = offset + bytes.limit();
+        return offset;
+    }
+
+    byte[] read(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(8);
+        readFully(header, offset);
+        int length = header.getInt(0);
+        int expectedCrc = header.getInt(4);
+        if (length < 0 || offset + 8 + length > channel.size()) {
+            throw new IOException("Bad record length " + length + " at offset " + offset + " in " + path);
+        }
+        ByteBuffer record = ByteBuffer.allocate(length);
+        readFully(record, offset + 8);
+        CRC32 crc = new CRC32();
+        crc.update(record.array());
+        if ((int) crc.getValue() != expectedCrc) {
+            throw new IOException("Checksum mismatch at offset " + offset + " in " + path);
+        }
+        return record.array();
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Record truncated at offset " + position + " in " + path);
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package auctionaire;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Server settings read from auctionaire.properties (or the file named by -Dauction.config),
+ * with any -D system property of the same name taking precedence.
+ */
+class ServerConfig {
+    private final Properties properties = new Properties();
+
+    private ServerConfig() {}
+
+    static ServerConfig load() {
+        ServerConfig config = new ServerConfig();
+        Path file = Paths.get(System.getProperty("auction.config", "auctionaire.properties"));
+        if (Files.isRegularFile(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                config.properties.load(in);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not read configuration from " + file, e);
+            }
+        }
+        return config;
+    }
+
+    String get(String key, String defaultValue) {
+        return System.getProperty(key, properties.getProperty(key, defaultValue));
+    }
+
+    int getInt(String key, int defaultValue) {
+        return Integer.parseInt(get(key, Integer.toString(defaultValue)).trim());
+    }
+
+    long getLong(String key, long defaultValue) {
+        return Long.parseLong(get(key, Long.toString(defaultValue)).trim());
+    }
+
+    boolean getBoolean(String key, boolean defaultValue) {
+        return Boolean.parseBoolean(get(key, Boolean.toString(defaultValue)).trim());
+    }
+}
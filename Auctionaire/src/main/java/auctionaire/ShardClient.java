@@ -0,0 +1,191 @@
+package auctionaire;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Settlement calls from this shard to bidders' home shards. The charges a batch owes one home
+ * shard go out as one POST /internal/charge from that shard's own sender thread, and are retried
+ * while the home shard is unreachable or failing (5xx). A home shard that is down delays settlement
+ * but cannot lose or double a charge: it recognises an auction it has already charged for and
+ * returns the same outcome. A 4xx would come back the same on every retry, so the charges are
+ * given up as unpaid instead of holding up every later charge to that shard.
+ */
+final class ShardClient {
+    private static final long RETRY_MILLIS = 1000;
+
+    private final ShardMap shards;
+    private final HttpClient http;
+    private final ExecutorService[] senders;
+
+    ShardClient(ShardMap shards) {
+        this.shards = shards;
+        this.http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        this.senders = new ExecutorService[shards.getShardCount()];
+        for (int i = 0; i < senders.length; i++) {
+            String name = "shard-charge-" + i;
+            senders[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /** One auction's winner and price; the home shard fills in winSeq (-1 if unpaid) and the wallet left. */
+    static final class Charge {
+        final int auctionId;
+        final String bidderName;
+        final String itemName;
+        final double amount;
+        final long wonAtMillis;
+        // The sending shard's own objects, handed back to it with the outcome; null on the home shard
+        final Auction auction;
+        final Bidder winner;
+        int winSeq = -1;
+        double wallet;
+        // Why the home shard refused the charge outright; null once it has answered
+        String refusal;
+
+        Charge(int auctionId, String bidderName, String itemName, double amount, long wonAtMillis, Auction auction, Bidder winner) {
+            this.auctionId = auctionId;
+            this.bidderName = bidderName;
+            this.itemName = itemName;
+            this.amount = amount;
+            this.wonAtMillis = wonAtMillis;
+            this.auction = auction;
+            this.winner = winner;
+        }
+    }
+
+    /** Sends the charges to their home shard in the background and passes them, answered, to onCharged. */
+    void charge(int shard, List<Charge> charges, Consumer<List<Charge>> onCharged) {
+        senders[shard].execute(() -> {
+            if (send(shard, charges)) onCharged.accept(charges);
+        });
+    }
+
+    private boolean send(int shard, List<Charge> charges) {
+        HttpRequest request = shards.authorize(HttpRequest.newBuilder(shards.getUri(shard).resolve("/internal/charge")))
+            .timeout(Duration.ofSeconds(30))
+            .header("Content-Type", "text/plain; charset=UTF-8")
+            .POST(HttpRequest.BodyPublishers.ofString(encodeCharges(charges)))
+            .build();
+        boolean failing = false;
+        while (true) {
+            String problem;
+            try {
+                HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() == 200) {
+                    decodeOutcomes(response.body(), charges);
+                    if (failing) System.out.println("LOG: Shard " + shard + " is answering charges again.");
+                    return true;
+                }
+                problem = "HTTP " + response.statusCode() + ": " + response.body();
+                if (isPermanent(response.statusCode())) {
+                    for (Charge charge : charges) {
+                        charge.refusal = problem;
+                        charge.winSeq = -1;
+                    }
+                    System.out.println("LOG: Shard " + shard + " refused to charge winners of auctions " + auctionIds(charges)
+                                       + ", settling them unpaid: " + problem);
+                    return true;
+                }
+            } catch (IOException | RuntimeException e) {
+                problem = e.toString();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            if (!failing) {
+                System.out.println("LOG: Could not charge winners on shard " + shard + ", retrying: " + problem);
+                failing = true;
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(RETRY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    // The request itself is at fault and would be refused again; timeouts and rate limits pass
+    private static boolean isPermanent(int status) {
+        return status >= 400 && status < 500 && status != 408 && status != 429;
+    }
+
+    private static String auctionIds(List<Charge> charges) {
+        StringBuilder ids = new StringBuilder();
+        for (Charge charge : charges) {
+            if (ids.length() > 0) ids.append(", ");
+            ids.append(charge.auctionId);
+        }
+        return ids.toString();
+    }
+
+    // One charge per line: auctionId, cents, wonAt, bidder, item; names URL-encoded so tabs and newlines survive
+    static String encodeCharges(List<Charge> charges) {
+        StringBuilder body = new StringBuilder(charges.size() * 64);
+        for (Charge charge : charges) {
+            body.append(charge.auctionId).append('\t')
+                .append(Math.round(charge.amount * 100)).append('\t')
+                .append(charge.wonAtMillis).append('\t')
+                .append(URLEncoder.encode(charge.bidderName, StandardCharsets.UTF_8)).append('\t')
+                .append(URLEncoder.encode(charge.itemName, StandardCharsets.UTF_8)).append('\n');
+        }
+        return body.toString();
+    }
+
+    static List<Charge> decodeCharges(String body) {
+        List<Charge> charges = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            if (line.isEmpty()) continue;
+            String[] fields = line.split("\t", -1);
+            if (fields.length != 5) throw new IllegalArgumentException("Bad charge line: " + line);
+            charges.add(new Charge(Integer.parseInt(fields[0]), URLDecoder.decode(fields[3], StandardCharsets.UTF_8),
+                                   URLDecoder.decode(fields[4], StandardCharsets.UTF_8), Long.parseLong(fields[1]) / 100.0,
+                                   Long.parseLong(fields[2]), null, null));
+        }
+        return charges;
+    }
+
+    // The answer has one line per charge, in order: auctionId, winSeq, wallet cents
+    static String encodeOutcomes(List<Charge> charges) {
+        StringBuilder body = new StringBuilder(charges.size() * 24);
+        for (Charge charge : charges) {
+            body.append(charge.auctionId).append('\t').append(charge.winSeq).append('\t')
+                .append(Math.round(charge.wallet * 100)).append('\n');
+        }
+        return body.toString();
+    }
+
+    private static void decodeOutcomes(String body, List<Charge> charges) {
+        String[] lines = body.split("\n");
+        if (lines.length != charges.size()) {
+            throw new IllegalStateException("Expected " + charges.size() + " charge outcomes, got " + lines.length);
+        }
+        for (int i = 0; i < lines.length; i++) {
+            String[] fields = lines[i].split("\t");
+            Charge charge = charges.get(i);
+            if (Integer.parseInt(fields[0]) != charge.auctionId) {
+                throw new IllegalStateException("Charge outcome for auction " + fields[0] + " where " + charge.auctionId + " was expected");
+            }
+            charge.winSeq = Integer.parseInt(fields[1]);
+            charge.wallet = Long.parseLong(fields[2]) / 100.0;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package auctionaire;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Who owns what when auctions are spread over several server processes. Shard k of n issues the
+ * auction ids k+1, k+1+n, k+1+2n, ..., so an id names its shard without a lookup. Each bidder's
+ * wallet and wins live on exactly one home shard, picked from a hash of the name; other shards
+ * only ever charge that bidder through it.
+ *
+ * The /internal paths the processes call on each other can move money, so they only answer a
+ * caller that presents cluster.secret, or any loopback caller when no secret is configured.
+ */
+final class ShardMap {
+    enum Role { STANDALONE, SHARD, ROUTER }
+
+    static final String SECRET_HEADER = "X-Cluster-Secret";
+
+    // One process holding everything, as before sharding
+    static final ShardMap STANDALONE = new ShardMap(Role.STANDALONE, 0, Collections.emptyList(), "");
+
+    final Role role;
+    // This process's shard; 0 when standalone, -1 on the router
+    final int index;
+    private final List<URI> shards;
+    // Empty when only loopback callers may use /internal paths
+    private final String secret;
+
+    ShardMap(Role role, int index, List<URI> shards, String secret) {
+        this.role = role;
+        this.index = index;
+        this.shards = shards;
+        this.secret = secret;
+    }
+
+    // cluster.shards lists every shard's base URL in index order, the same list on every process
+    static ShardMap fromConfig(ServerConfig config) {
+        Role role = Role.valueOf(config.get("cluster.role", "standalone").trim().toUpperCase());
+        String secret = config.get("cluster.secret", "").trim();
+        if (role == Role.STANDALONE) {
+            return secret.isEmpty() ? STANDALONE : new ShardMap(role, 0, Collections.emptyList(), secret);
+        }
+        List<URI> shards = new ArrayList<>();
+        for (String url : config.get("cluster.shards", "").split(",")) {
+            if (!url.trim().isEmpty()) shards.add(URI.create(url.trim().replaceAll("/+$", "")));
+        }
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("cluster.shards must list the shards' URLs when cluster.role is " + role);
+        }
+        int index = -1;
+        if (role == Role.SHARD) {
+            index = config.getInt("cluster.shardIndex", -1);
+            if (index < 0 || index >= shards.size()) {
+                throw new IllegalArgumentException("cluster.shardIndex must be between 0 and " + (shards.size() - 1));
+            }
+        }
+        if (secret.isEmpty()) {
+            for (URI shard : shards) {
+                if (!isLoopback(shard.getHost())) {
+                    System.out.println("LOG: cluster.secret is not set, so " + shard + " will refuse calls from other hosts.");
+                    break;
+                }
+            }
+        }
+        return new ShardMap(role, index, Collections.unmodifiableList(shards), secret);
+    }
+
+    private static boolean isLoopback(String host) {
+        return "localhost".equalsIgnoreCase(host) || (host != null && (host.startsWith("127.") || host.equals("[::1]")));
+    }
+
+    /** Adds this cluster's secret, if it has one, to a request for another process's /internal path. */
+    HttpRequest.Builder authorize(HttpRequest.Builder request) {
+        return secret.isEmpty() ? request : request.header(SECRET_HEADER, secret);
+    }
+
+    /** Whether a request for an /internal path comes from this cluster. */
+    boolean admits(HttpExchange exchange) {
+        if (secret.isEmpty()) {
+            return exchange.getRemoteAddress().getAddress().isLoopbackAddress();
+        }
+        String presented = exchange.getRequestHeaders().getFirst(SECRET_HEADER);
+        // Compared in constant time so the answer's timing gives nothing away
+        return presented != null && MessageDigest.isEqual(presented.getBytes(StandardCharsets.UTF_8),
+                                                          secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    int getShardCount() {
+        return Math.max(shards.size(), 1);
+    }
+
+    URI getUri(int shard) {
+        return shards.get(shard);
+    }
+
+    /** The first auction id this shard issues; later ones follow every getShardCount() ids. */
+    int getFirstAuctionId() {
+        return index + 1;
+    }
+
+    int shardOfAuction(int auctionId) {
+        return Math.floorMod(auctionId - 1, getShardCount());
+    }
+
+    boolean ownsAuction(int auctionId) {
+        return auctionId > 0 && shardOfAuction(auctionId) == index;
+    }
+
+    // String.hashCode is fixed by the language spec, so every process agrees on a bidder's home
+    int homeOf(String bidderName) {
+        return Math.floorMod(bidderName.hashCode() * 0x9E3779B9, getShardCount());
+    }
+
+    boolean isHome(String bidderName) {
+        return homeOf(bidderName) == index;
+    }
+}
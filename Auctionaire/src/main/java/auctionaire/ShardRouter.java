@@ -0,0 +1,704 @@
+package auctionaire;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The public face of a sharded deployment. Holds no auctions itself: a bid goes to the shard that
+ * owns its auction id, a bidder's wallet and wins come from the bidder's home shard, and listings
+ * are gathered from every shard and merged. Each shard's push frames arrive over one
+ * /internal/events connection and are fanned out to the browsers from here.
+ */
+final class ShardRouter {
+    private static final long RECONNECT_MILLIS = 1000;
+
+    private final ShardMap shards;
+    private final HttpClient http;
+    private final Metrics metrics = new Metrics();
+    private final PushStream pushStream = new PushStream();
+    private final String bootId = Long.toString(System.currentTimeMillis(), 36);
+    // Each shard's last /api/auctions answer, revalidated with its ETag on every request
+    private final ShardSnapshot[] shardSnapshots;
+    private final Object snapshotLock = new Object();
+    private AuctionManager.AuctionsSnapshot merged;
+    private String mergedFrom;
+    private long mergedVersion;
+    private final AtomicInteger nextCreateShard = new AtomicInteger();
+    private final AtomicInteger connectedFeeds = new AtomicInteger();
+
+    ShardRouter(ShardMap shards) {
+        this.shards = shards;
+        this.http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+        this.shardSnapshots = new ShardSnapshot[shards.getShardCount()];
+        metrics.gauge("auctionaire_stream_subscribers", "", "Open event streams", pushStream::getSubscriberCount);
+        metrics.gauge("auctionaire_shard_feeds_connected", "", "Shards whose event feed is connected", connectedFeeds::get);
+    }
+
+    private static final class ShardSnapshot {
+        final String etag;
+        final byte[] json;
+
+        ShardSnapshot(String etag, byte[] json) {
+            this.etag = etag;
+            this.json = json;
+        }
+    }
+
+    Metrics getMetrics() {
+        return metrics;
+    }
+
+    void registerHandlers(HttpServer server, Semaphore readLimit, Semaphore bidLimit, Semaphore streamLimit, Executor streams) {
+        server.createContext("/api/auctions", new AuctionServer.LimitedHandler(new AuctionsApiHandler(), readLimit));
+        server.createContext("/api/auctions/", new AuctionServer.LimitedHandler(new BidHistoryApiHandler(), readLimit));
+        server.createContext("/api/bid", new AuctionServer.LimitedHandler(new BidApiHandler(), bidLimit));
+        server.createContext("/api/bids", new AuctionServer.LimitedHandler(new BatchBidApiHandler(), bidLimit));
+        server.createContext("/api/my-wins", new AuctionServer.LimitedHandler(new HomeShardHandler(), readLimit));
+        server.createContext("/api/user-status", new AuctionServer.LimitedHandler(new HomeShardHandler(), readLimit));
+        server.createContext("/api/stream", new AuctionServer.StreamHandler(new StreamApiHandler(), streamLimit, streams));
+        server.createContext("/api/metrics", new AuctionServer.LimitedHandler(new AuctionServer.MetricsApiHandler(), readLimit));
+        server.createContext("/internal/auctions", new AuctionServer.InternalHandler(
+            new AuctionServer.LimitedHandler(new CreateAuctionHandler(), bidLimit), shards));
+    }
+
+    /** Connects to every shard's event feed; each connection has its own thread and reconnects on its own. */
+    void start() {
+        for (int i = 0; i < shards.getShardCount(); i++) {
+            int shard = i;
+            Thread feed = new Thread(() -> followFeed(shard), "shard-feed-" + i);
+            feed.setDaemon(true);
+            feed.start();
+        }
+    }
+
+    // GET /api/auctions: the shards' snapshots joined into one, or a merged page for a query
+    class AuctionsApiHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            AuctionCatalog.Query query = null;
+            try (FormCodec.Form params = FormCodec.readQuery(exchange.getRequestURI().getRawQuery())) {
+                if (AuctionServer.rejectForm(exchange, params)) return;
+                if (AuctionServer.AuctionsApiHandler.isQuery(params)) {
+                    query = AuctionServer.AuctionsApiHandler.parseQuery(params);
+                }
+            } catch (IllegalArgumentException e) {
+                AuctionServer.sendTextResponse(exchange, 400, "Error: " + e.getMessage());
+                return;
+            }
+            if (query == null) {
+                AuctionManager.AuctionsSnapshot snapshot;
+                try {
+                    snapshot = getSnapshot();
+                } catch (IOException e) {
+                    AuctionServer.sendTextResponse(exchange, 502, "Error: A shard is unavailable.");
+                    return;
+                }
+                AuctionServer.AuctionsApiHandler.sendSnapshot(exchange, snapshot);
+                return;
+            }
+            String pathAndQuery = "/api/auctions?" + exchange.getRequestURI().getRawQuery();
+            List<CompletableFuture<HttpResponse<String>>> pending = new ArrayList<>();
+            for (int shard = 0; shard < shards.getShardCount(); shard++) {
+                pending.add(http.sendAsync(get(shard, pathAndQuery).build(), HttpResponse.BodyHandlers.ofString()));
+            }
+            List<String> pages = new ArrayList<>();
+            for (CompletableFuture<HttpResponse<String>> page : pending) {
+                HttpResponse<String> response;
+                try {
+                    response = join(page);
+                } catch (IOException e) {
+                    AuctionServer.sendTextResponse(exchange, 502, "Error: A shard is unavailable.");
+                    return;
+                }
+                if (response.statusCode() != 200) {
+                    relay(exchange, response.statusCode(), response.body().getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                pages.add(response.body());
+            }
+            exchange.getResponseHeaders().set("X-Server-Time", Long.toString(System.currentTimeMillis()));
+            try (JsonWriter json = JsonWriter.acquire()) {
+                mergePages(query, pages, json);
+                AuctionServer.sendJsonResponse(exchange, json);
+            }
+        }
+    }
+
+    // GET /api/auctions/{id}/bids: answered by the shard that owns the auction
+    class BidHistoryApiHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String[] parts = exchange.getRequestURI().getPath().split("/");
+            int shard = 0;
+            if (parts.length > 3) {
+                try {
+                    shard = shards.shardOfAuction(Integer.parseInt(parts[3]));
+                } catch (NumberFormatException e) {
+                    // Any shard gives the same error for a malformed id
+                }
+            }
+            forward(exchange, shard, null);
+        }
+    }
+
+    // POST /api/bid: forwarded as sent to the shard that owns the auction
+    class BidApiHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                exchange.close();
+                return;
+            }
+            int shard = 0;
+            byte[] body;
+            try (FormCodec.Form form = FormCodec.readBody(exchange.getRequestBody(), AuctionServer.MAX_FORM_BYTES)) {
+                if (AuctionServer.rejectForm(exchange, form)) return;
+                try {
+                    shard = shards.shardOfAuction(form.getInt("auctionId", 1));
+                } catch (NumberFormatException e) {
+                    // Shard 0 answers the malformed request as any shard would
+                }
+                body = form.toByteArray();
+            }
+            forward(exchange, shard, body);
+        }
+    }
+
+    // POST /api/bids: split by owning shard, sent in parallel, and the results put back in request order
+    class BatchBidApiHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                exchange.close();
+                return;
+            }
+            String bidderName;
+            String[] entries;
+            int[] owners;
+            try (FormCodec.Form form = FormCodec.readBody(exchange.getRequestBody(), AuctionServer.MAX_FORM_BYTES)) {
+                if (AuctionServer.rejectForm(exchange, form)) return;
+                bidderName = form.getString("bidderName");
+                String bids = form.getString("bids");
+                entries = bids == null ? new String[0] : bids.split(",", -1);
+                owners = new int[entries.length];
+                boolean routable = bidderName != null && entries.length > 0 && entries.length <= AuctionServer.MAX_BATCH_SIZE;
+                for (int i = 0; routable && i < entries.length; i++) {
+                    int colon = entries[i].indexOf(':');
+                    try {
+                        owners[i] = colon < 0 ? -1 : shards.shardOfAuction(Integer.parseInt(entries[i].substring(0, colon).trim()));
+                    } catch (NumberFormatException e) {
+                        owners[i] = -1;
+                    }
+                    routable = owners[i] >= 0;
+                }
+                if (!routable) {
+                    // Shard 0 turns it down with the same error a single server would give
+                    forward(exchange, 0, form.toByteArray());
+                    return;
+                }
+            }
+
+            String namePrefix = "bidderName=" + URLEncoder.encode(bidderName, StandardCharsets.UTF_8) + "&bids=";
+            List<CompletableFuture<HttpResponse<String>>> pending = new ArrayList<>();
+            List<int[]> positions = new ArrayList<>();
+            for (int shard = 0; shard < shards.getShardCount(); shard++) {
+                StringBuilder shardBids = new StringBuilder();
+                int[] indexes = new int[entries.length];
+                int count = 0;
+                for (int i = 0; i < entries.length; i++) {
+                    if (owners[i] != shard) continue;
+                    if (count > 0) shardBids.append(',');
+                    shardBids.append(entries[i]);
+                    indexes[count++] = i;
+                }
+                if (count == 0) continue;
+                String body = namePrefix + URLEncoder.encode(shardBids.toString(), StandardCharsets.UTF_8);
+                pending.add(http.sendAsync(post(shard, "/api/bids", body.getBytes(StandardCharsets.UTF_8)).build(),
+                                           HttpResponse.BodyHandlers.ofString()));
+                positions.add(Arrays.copyOf(indexes, count));
+            }
+            String[] results = new String[entries.length];
+            for (int p = 0; p < pending.size(); p++) {
+                HttpResponse<String> response;
+                try {
+                    response = join(pending.get(p));
+                } catch (IOException e) {
+                    // Bids already sent to the other shards stand; the client cannot tell which, as with any lost answer
+                    AuctionServer.sendTextResponse(exchange, 502, "Error: A shard is unavailable.");
+                    return;
+                }
+                if (response.statusCode() != 200) {
+                    relay(exchange, response.statusCode(), response.body().getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                List<String> codes = arrayElements(response.body(), 0);
+                int[] indexes = positions.get(p);
+                if (codes.size() != indexes.length) {
+                    throw new IOException("Shard answered " + codes.size() + " bids where " + indexes.length + " were sent");
+                }
+                for (int i = 0; i < indexes.length; i++) {
+                    results[indexes[i]] = codes.get(i);
+                }
+            }
+            try (JsonWriter json = JsonWriter.acquire().raw('[')) {
+                for (int i = 0; i < results.length; i++) {
+                    if (i > 0) json.raw(',');
+                    json.raw(results[i]);
+                }
+                AuctionServer.sendJsonResponse(exchange, json.raw(']'));
+            }
+        }
+    }
+
+    // GET /api/user-status and /api/my-wins: answered by the bidder's home shard, which holds the wallet and wins
+    class HomeShardHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String bidderName;
+            try (FormCodec.Form query = FormCodec.readQuery(exchange.getRequestURI().getRawQuery())) {
+                if (AuctionServer.rejectForm(exchange, query)) return;
+                bidderName = query.getString("bidderName");
+            }
+            forward(exchange, bidderName == null ? 0 : shards.homeOf(bidderName.trim()), null);
+        }
+    }
+
+    // The same stream a single server sends, put together from the shards' feeds
+    class StreamApiHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String bidderName;
+            try (FormCodec.Form query = FormCodec.readQuery(exchange.getRequestURI().getRawQuery())) {
+                if (AuctionServer.rejectForm(exchange, query)) return;
+                bidderName = query.getString("bidderName");
+            }
+            if (bidderName == null || bidderName.trim().isEmpty()) {
+                exchange.sendResponseHeaders(400, -1);
+                exchange.close();
+                return;
+            }
+            bidderName = bidderName.trim();
+            // Subscribed first, so nothing that happens while the snapshot is gathered goes missing
+            PushStream.Subscriber subscriber = pushStream.subscribe(bidderName);
+            try {
+                byte[] snapshot;
+                try (JsonWriter json = JsonWriter.acquire()) {
+                    writeStreamSnapshotJson(bidderName, json.raw("event: snapshot\ndata: "));
+                    // Copied out so the writer goes back to the pool before the stream settles in
+                    snapshot = json.raw("\n\n").toByteArray();
+                } catch (IOException e) {
+                    AuctionServer.sendTextResponse(exchange, 502, "Error: A shard is unavailable.");
+                    return;
+                }
+                exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=UTF-8");
+                exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(snapshot);
+                    os.flush();
+                    while (!subscriber.isClosed()) {
+                        byte[] frame = subscriber.poll(15, TimeUnit.SECONDS);
+                        os.write(frame != null ? frame : AuctionServer.HEARTBEAT);
+                        os.flush();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                // The browser or a shard went away; the browser reconnects for a fresh snapshot
+            } finally {
+                pushStream.unsubscribe(subscriber);
+            }
+        }
+    }
+
+    // POST /internal/auctions: new auctions go to the shards in turn
+    class CreateAuctionHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                exchange.close();
+                return;
+            }
+            byte[] body;
+            try (FormCodec.Form form = FormCodec.readBody(exchange.getRequestBody(), AuctionServer.MAX_FORM_BYTES)) {
+                if (AuctionServer.rejectForm(exchange, form)) return;
+                body = form.toByteArray();
+            }
+            forward(exchange, Math.floorMod(nextCreateShard.getAndIncrement(), shards.getShardCount()), body);
+        }
+    }
+
+    /** Every shard's open auctions as one array, rebuilt only when some shard's snapshot has changed. */
+    AuctionManager.AuctionsSnapshot getSnapshot() throws IOException {
+        List<CompletableFuture<HttpResponse<byte[]>>> pending = new ArrayList<>();
+        for (int shard = 0; shard < shards.getShardCount(); shard++) {
+            HttpRequest.Builder request = get(shard, "/api/auctions");
+            ShardSnapshot cached = shardSnapshots[shard];
+            if (cached != null) request.header("If-None-Match", cached.etag);
+            pending.add(http.sendAsync(request.build(), HttpResponse.BodyHandlers.ofByteArray()));
+        }
+        StringBuilder etags = new StringBuilder();
+        ShardSnapshot[] current = new ShardSnapshot[pending.size()];
+        for (int shard = 0; shard < current.length; shard++) {
+            HttpResponse<byte[]> response = join(pending.get(shard));
+            if (response.statusCode() == 200) {
+                current[shard] = new ShardSnapshot(response.headers().firstValue("ETag").orElse(""), response.body());
+                shardSnapshots[shard] = current[shard];
+            } else if (response.statusCode() == 304 && shardSnapshots[shard] != null) {
+                current[shard] = shardSnapshots[shard];
+            } else {
+                throw new IOException("Shard " + shard + " answered /api/auctions with HTTP " + response.statusCode());
+            }
+            etags.append(current[shard].etag).append(',');
+        }
+        String from = etags.toString();
+        synchronized (snapshotLock) {
+            if (merged == null || !from.equals(mergedFrom)) {
+                JsonWriter json = new JsonWriter(1024).raw('[');
+                boolean first = true;
+                for (ShardSnapshot snapshot : current) {
+                    // Each shard sends "[...]"; an empty one is just "[]"
+                    String array = new String(snapshot.json, StandardCharsets.UTF_8).trim();
+                    String items = array.substring(1, array.length() - 1).trim();
+                    if (items.isEmpty()) continue;
+                    if (!first) json.raw(", ");
+                    json.raw(items);
+                    first = false;
+                }
+                mergedVersion++;
+                merged = new AuctionManager.AuctionsSnapshot(mergedVersion, "\"" + bootId + "-" + mergedVersion + "\"",
+                                                             json.raw(']').toByteArray());
+                mergedFrom = from;
+            }
+            return merged;
+        }
+    }
+
+    private void writeStreamSnapshotJson(String bidderName, JsonWriter out) throws IOException {
+        int home = shards.homeOf(bidderName);
+        String name = URLEncoder.encode(bidderName, StandardCharsets.UTF_8);
+        CompletableFuture<HttpResponse<String>> status =
+            http.sendAsync(get(home, "/api/user-status?bidderName=" + name).build(), HttpResponse.BodyHandlers.ofString());
+        CompletableFuture<HttpResponse<String>> wins = http.sendAsync(
+            get(home, "/api/my-wins?bidderName=" + name + "&since=0&limit=" + AuctionManager.WIN_PAGE_SIZE).build(),
+            HttpResponse.BodyHandlers.ofString());
+        AuctionManager.AuctionsSnapshot auctions = getSnapshot();
+        out.raw("{\"serverTime\":").number(System.currentTimeMillis())
+           .raw(", \"auctions\":").raw(auctions.json)
+           .raw(", \"status\":").raw(okBody(join(status)))
+           .raw(", \"wins\":").raw(okBody(join(wins)))
+           .raw('}');
+    }
+
+    /**
+     * Merges one page per shard into the page a single server would have returned. Every shard
+     * walked the same ordering from the same cursor, so the merged page is the smallest entries
+     * overall, but only up to the earliest point where some shard stopped: past it, that shard may
+     * still hold entries it did not send. The next cursor resumes from wherever the page ended.
+     */
+    static void mergePages(AuctionCatalog.Query query, List<String> pages, JsonWriter out) {
+        Comparator<AuctionCatalog.Listing> order = query.order == AuctionCatalog.Order.PRICE_DESC
+            ? query.order.comparator.reversed() : query.order.comparator;
+        List<PageEntry> entries = new ArrayList<>();
+        AuctionCatalog.Listing bound = null;
+        String boundCursor = null;
+        for (String page : pages) {
+            for (String auction : arrayElements(page, page.indexOf('['))) {
+                AuctionCatalog.Listing listing = AuctionCatalog.Listing.of(
+                    Integer.parseInt(field(auction, "id")), Long.parseLong(field(auction, "endsAt")),
+                    Math.round(Double.parseDouble(field(auction, "highestBid")) * 100), unquote(field(auction, "itemName")));
+                entries.add(new PageEntry(listing, auction));
+            }
+            String next = unquote(field(page, "next"));
+            if (next != null) {
+                AuctionCatalog.Listing stop = AuctionCatalog.parseCursor(query.order, next);
+                if (bound == null || order.compare(stop, bound) < 0) {
+                    bound = stop;
+                    boundCursor = next;
+                }
+            }
+        }
+        entries.sort((a, b) -> order.compare(a.listing, b.listing));
+
+        out.raw("{\"auctions\":[");
+        int taken = 0;
+        PageEntry last = null;
+        boolean more = false;
+        for (PageEntry entry : entries) {
+            if (bound != null && order.compare(entry.listing, bound) > 0) break;
+            if (taken == query.limit) {
+                more = true;
+                break;
+            }
+            if (taken++ > 0) out.raw(", ");
+            out.raw(entry.json);
+            last = entry;
+        }
+        out.raw("], \"next\":");
+        if (more) {
+            out.string(AuctionCatalog.cursor(query.order, last.listing));
+        } else if (bound != null) {
+            out.string(boundCursor);
+        } else {
+            out.raw("null");
+        }
+        out.raw('}');
+    }
+
+    private static final class PageEntry {
+        final AuctionCatalog.Listing listing;
+        final String json;
+
+        PageEntry(AuctionCatalog.Listing listing, String json) {
+            this.listing = listing;
+            this.json = json;
+        }
+    }
+
+    // Reads one shard's feed until it breaks, then reconnects. Browsers are dropped whenever the feed
+    // was interrupted, since they may have missed frames; they come back with fresh snapshots.
+    private void followFeed(int shard) {
+        HttpRequest request = get(shard, "/internal/events").build();
+        boolean failing = false;
+        while (true) {
+            try {
+                HttpResponse<InputStream> response = http.send(request, HttpResponse.BodyHandlers.ofInputStream());
+                if (response.statusCode() != 200) {
+                    response.body().close();
+                    throw new IOException("HTTP " + response.statusCode());
+                }
+                if (failing) {
+                    System.out.println("LOG: Event feed from shard " + shard + " is back.");
+                    pushStream.disconnectAll();
+                    failing = false;
+                }
+                connectedFeeds.incrementAndGet();
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+                    relayFrames(reader);
+                } finally {
+                    connectedFeeds.decrementAndGet();
+                }
+                throw new IOException("feed closed");
+            } catch (IOException e) {
+                if (!failing) {
+                    System.out.println("LOG: Lost the event feed from shard " + shard + ", reconnecting: " + e);
+                    pushStream.disconnectAll();
+                    failing = true;
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(RECONNECT_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void relayFrames(BufferedReader reader) throws IOException {
+        String event = null;
+        String to = null;
+        String data = null;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                // The shards' clock syncs are dropped; this router's own stream sends its own
+                if (event != null && data != null && !event.equals("time")) {
+                    if (to != null) {
+                        pushStream.sendTo(to, event, data);
+                    } else {
+                        pushStream.broadcast(event, data);
+                    }
+                }
+                event = to = data = null;
+            } else if (line.startsWith("event: ")) {
+                event = line.substring(7);
+            } else if (line.startsWith("to: ")) {
+                to = URLDecoder.decode(line.substring(4), StandardCharsets.UTF_8);
+            } else if (line.startsWith("data: ")) {
+                data = line.substring(6);
+            }
+        }
+    }
+
+    private HttpRequest.Builder get(int shard, String pathAndQuery) {
+        return shards.authorize(HttpRequest.newBuilder(shardUri(shard, pathAndQuery)).timeout(Duration.ofSeconds(30)));
+    }
+
+    private HttpRequest.Builder post(int shard, String path, byte[] form) {
+        return shards.authorize(HttpRequest.newBuilder(shardUri(shard, path)))
+            .timeout(Duration.ofSeconds(30))
+            .header("Content-Type", "application/x-www-form-urlencoded")
+            .POST(HttpRequest.BodyPublishers.ofByteArray(form));
+    }
+
+    private URI shardUri(int shard, String pathAndQuery) {
+        return URI.create(shards.getUri(shard) + pathAndQuery);
+    }
+
+    // Passes the request to one shard, with the body already read (null for a GET), and its answer back
+    private void forward(HttpExchange exchange, int shard, byte[] form) throws IOException {
+        String rawQuery = exchange.getRequestURI().getRawQuery();
+        String pathAndQuery = exchange.getRequestURI().getRawPath() + (rawQuery != null ? "?" + rawQuery : "");
+        HttpRequest request = (form != null ? post(shard, pathAndQuery, form) : get(shard, pathAndQuery)).build();
+        HttpResponse<byte[]> response;
+        try {
+            response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (IOException e) {
+            AuctionServer.sendTextResponse(exchange, 502, "Error: Shard " + shard + " is unavailable.");
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type",
+            response.headers().firstValue("Content-Type").orElse("text/plain; charset=UTF-8"));
+        relay(exchange, response.statusCode(), response.body());
+    }
+
+    private static void relay(HttpExchange exchange, int status, byte[] body) throws IOException {
+        if (!exchange.getResponseHeaders().containsKey("Content-Type")) {
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        }
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    private static <T> HttpResponse<T> join(CompletableFuture<HttpResponse<T>> response) throws IOException {
+        try {
+            return response.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+    }
+
+    private static String okBody(HttpResponse<String> response) throws IOException {
+        if (response.statusCode() != 200) {
+            throw new IOException("Shard answered " + response.request().uri().getPath() + " with HTTP " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    // --- Just enough JSON reading for what the shards send: arrays of flat objects and their fields ---
+
+    // The raw text of each element of the array starting at from
+    static List<String> arrayElements(String json, int from) {
+        List<String> elements = new ArrayList<>();
+        int i = skipSpaces(json, from + 1);
+        if (json.charAt(i) == ']') return elements;
+        while (true) {
+            int end = skipValue(json, i);
+            elements.add(json.substring(i, end));
+            i = skipSpaces(json, end);
+            if (json.charAt(i) == ']') return elements;
+            i = skipSpaces(json, i + 1);
+        }
+    }
+
+    // The raw text of a top-level field of an object, or null if it has none
+    static String field(String object, String name) {
+        int i = skipSpaces(object, object.indexOf('{') + 1);
+        while (object.charAt(i) != '}') {
+            int keyEnd = skipValue(object, i);
+            String key = unquote(object.substring(i, keyEnd));
+            int valueStart = skipSpaces(object, object.indexOf(':', keyEnd) + 1);
+            int valueEnd = skipValue(object, valueStart);
+            if (name.equals(key)) return object.substring(valueStart, valueEnd);
+            i = skipSpaces(object, valueEnd);
+            if (object.charAt(i) == ',') i = skipSpaces(object, i + 1);
+        }
+        return null;
+    }
+
+    // A JSON string's value; null for null
+    static String unquote(String raw) {
+        if (raw == null || raw.equals("null")) return null;
+        StringBuilder value = new StringBuilder(raw.length());
+        for (int i = 1; i < raw.length() - 1; i++) {
+            char c = raw.charAt(i);
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            c = raw.charAt(++i);
+            switch (c) {
+                case 'b': value.append('\b'); break;
+                case 'f': value.append('\f'); break;
+                case 'n': value.append('\n'); break;
+                case 'r': value.append('\r'); break;
+                case 't': value.append('\t'); break;
+                case 'u': value.append((char) Integer.parseInt(raw.substring(i + 1, i + 5), 16)); i += 4; break;
+                default: value.append(c);
+            }
+        }
+        return value.toString();
+    }
+
+    private static int skipValue(String json, int i) {
+        char c = json.charAt(i);
+        if (c == '"') {
+            i++;
+            while (json.charAt(i) != '"') {
+                i += json.charAt(i) == '\\' ? 2 : 1;
+            }
+            return i + 1;
+        }
+        if (c == '{' || c == '[') {
+            int depth = 0;
+            do {
+                c = json.charAt(i);
+                if (c == '"') {
+                    i = skipValue(json, i);
+                    continue;
+                }
+                if (c == '{' || c == '[') depth++;
+                if (c == '}' || c == ']') depth--;
+                i++;
+            } while (depth > 0);
+            return i;
+        }
+        while (i < json.length() && ",}] \n\r\t".indexOf(json.charAt(i)) < 0) i++;
+        return i;
+    }
+
+    private static int skipSpaces(String json, int i) {
+        while (i < json.length() && Character.isWhitespace(json.charAt(i))) i++;
+        return i;
+    }
+}
@@ -0,0 +1,182 @@
+package auctionaire;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Static files for the bidder pages, loaded once and served from memory with a pre-gzipped copy.
+ * Assets come from server.static.dir when it is set (optionally reloaded when a file changes),
+ * otherwise from the copies packaged in the jar. Files above server.static.inMemoryMaxBytes
+ * stay on disk and are streamed from a FileChannel instead.
+ */
+class StaticAssets {
+    // Packaged assets; a directory source serves whatever regular files it contains
+    private static final String[] BUNDLED = {"index.html"};
+
+    private final Map<String, Asset> assets = new ConcurrentHashMap<>();
+    private final Path dir;
+    private final long inMemoryMaxBytes;
+    private final String cacheControl;
+
+    private StaticAssets(Path dir, long inMemoryMaxBytes, String cacheControl) {
+        this.dir = dir;
+        this.inMemoryMaxBytes = inMemoryMaxBytes;
+        this.cacheControl = cacheControl;
+    }
+
+    static StaticAssets fromConfig(ServerConfig config) throws IOException {
+        String dir = config.get("server.static.dir", "");
+        StaticAssets assets = new StaticAssets(dir.isEmpty() ? null : Paths.get(dir),
+            config.getLong("server.static.inMemoryMaxBytes", 1 << 20),
+            config.get("server.static.cacheControl", "no-cache"));
+        assets.loadAll();
+        if (assets.dir != null && config.getBoolean("server.static.watch", false)) {
+            assets.startWatching();
+        }
+        return assets;
+    }
+
+    /** The asset for a request path, with "/" meaning index.html; null if there is none. */
+    Asset get(String requestPath) {
+        String name = requestPath == null || requestPath.equals("/") ? "index.html" : requestPath.substring(1);
+        return assets.get(name);
+    }
+
+    private void loadAll() throws IOException {
+        if (dir == null) {
+            for (String name : BUNDLED) {
+                try (InputStream in = StaticAssets.class.getResourceAsStream("/static/" + name)) {
+                    if (in == null) throw new IOException("Missing bundled asset static/" + name);
+                    assets.put(name, Asset.inMemory(name, readAll(in), cacheControl));
+                }
+            }
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                if (Files.isRegularFile(file)) load(file);
+            }
+        }
+    }
+
+    private void load(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        long size = Files.size(file);
+        Asset asset = size > inMemoryMaxBytes
+            ? Asset.onDisk(name, file, size, Files.getLastModifiedTime(file).toMillis(), cacheControl)
+            : Asset.inMemory(name, Files.readAllBytes(file), cacheControl);
+        assets.put(name, asset);
+    }
+
+    // Editors often write a file in several steps; the last event wins and a failed read keeps the old copy
+    private void startWatching() throws IOException {
+        WatchService watcher = dir.getFileSystem().newWatchService();
+        dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                     StandardWatchEventKinds.ENTRY_DELETE);
+        Thread thread = new Thread(() -> {
+            while (true) {
+                WatchKey key;
+                try {
+                    key = watcher.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) continue;
+                    Path file = dir.resolve((Path) event.context());
+                    try {
+                        if (Files.isRegularFile(file)) {
+                            load(file);
+                        } else {
+                            assets.remove(file.getFileName().toString());
+                        }
+                    } catch (IOException e) {
+                        System.out.println("LOG: Could not reload " + file + ": " + e);
+                    }
+                }
+                key.reset();
+            }
+        }, "static-asset-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        in.transferTo(buffer);
+        return buffer.toByteArray();
+    }
+
+    /** One servable file. Exactly one of bytes and file is set. */
+    static final class Asset {
+        final String contentType;
+        final String etag;
+        final String cacheControl;
+        final byte[] bytes;
+        final byte[] gzip;
+        final Path file;
+        final long size;
+
+        private Asset(String contentType, String etag, String cacheControl, byte[] bytes, byte[] gzip, Path file, long size) {
+            this.contentType = contentType;
+            this.etag = etag;
+            this.cacheControl = cacheControl;
+            this.bytes = bytes;
+            this.gzip = gzip;
+            this.file = file;
+            this.size = size;
+        }
+
+        static Asset inMemory(String name, byte[] bytes, String cacheControl) {
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            String etag = "\"" + Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(bytes.length) + "\"";
+            String contentType = contentType(name);
+            byte[] gzip = isCompressible(contentType) ? gzip(bytes) : null;
+            // Not worth a Content-Encoding header if compression barely helps
+            if (gzip != null && gzip.length >= bytes.length * 9L / 10) gzip = null;
+            return new Asset(contentType, etag, cacheControl, bytes, gzip, null, bytes.length);
+        }
+
+        static Asset onDisk(String name, Path file, long size, long modifiedMillis, String cacheControl) {
+            String etag = "\"" + Long.toHexString(modifiedMillis) + "-" + Long.toHexString(size) + "\"";
+            return new Asset(contentType(name), etag, cacheControl, null, null, file, size);
+        }
+
+        private static String contentType(String name) {
+            String lower = name.toLowerCase(Locale.ROOT);
+            if (lower.endsWith(".html") || lower.endsWith(".htm")) return "text/html; charset=UTF-8";
+            if (lower.endsWith(".js")) return "text/javascript; charset=UTF-8";
+            if (lower.endsWith(".css")) return "text/css; charset=UTF-8";
+            if (lower.endsWith(".json")) return "application/json; charset=UTF-8";
+            if (lower.endsWith(".svg")) return "image/svg+xml";
+            if (lower.endsWith(".png")) return "image/png";
+            if (lower.endsWith(".jpg") || lower.endsWith(".jpeg")) return "image/jpeg";
+            if (lower.endsWith(".ico")) return "image/x-icon";
+            return "application/octet-stream";
+        }
+
+        private static boolean isCompressible(String contentType) {
+            return contentType.startsWith("text/") || contentType.startsWith("application/json")
+                || contentType.startsWith("image/svg");
+        }
+
+        private static byte[] gzip(byte[] data) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(data.length / 4 + 64);
+            try (GZIPOutputStream gz = new GZIPOutputStream(buffer)) {
+                gz.write(data);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return buffer.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package auctionaire;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashed timing wheel that fires tasks at absolute deadlines from one shared thread.
+ * Deadlines are System.nanoTime() values; a task fires on the first tick at or after it.
+ */
+class TimingWheel {
+    private final long tickNanos;
+    private final int mask;
+    private final ArrayDeque<Timeout>[] buckets;
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final long startNanos;
+    private final Thread worker;
+    private long tick;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    TimingWheel(String name, long tickDuration, TimeUnit unit, int wheelSize) {
+        int size = Integer.highestOneBit(Math.max(wheelSize, 2) - 1) << 1;
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.mask = size - 1;
+        this.buckets = new ArrayDeque[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+        this.startNanos = System.nanoTime();
+        this.worker = new Thread(this::runWorker, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public Timeout schedule(Runnable task, long deadlineNanos) {
+        Timeout timeout = new Timeout(task, deadlineNanos);
+        pending.add(timeout);
+        return timeout;
+    }
+
+    private void runWorker() {
+        while (true) {
+            long tickDeadline = startNanos + (tick + 1) * tickNanos;
+            long sleepNanos = tickDeadline - System.nanoTime();
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            transferPending();
+            expire(buckets[(int) (tick & mask)], tickDeadline);
+            tick++;
+        }
+    }
+
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.isCancelled()) continue;
+            long ticks = Math.max((timeout.deadlineNanos - startNanos + tickNanos - 1) / tickNanos - 1, tick);
+            timeout.remainingRounds = (ticks - tick) / buckets.length;
+            buckets[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    private void expire(ArrayDeque<Timeout> bucket, long tickDeadline) {
+        int n = bucket.size();
+        for (int i = 0; i < n; i++) {
+            Timeout timeout = bucket.poll();
+            if (timeout.isCancelled()) continue;
+            if (timeout.remainingRounds > 0 || timeout.deadlineNanos > tickDeadline) {
+                if (timeout.remainingRounds > 0) timeout.remainingRounds--;
+                bucket.add(timeout);
+                continue;
+            }
+            timeout.expire();
+        }
+    }
+
+    static final class Timeout {
+        private static final int PENDING = 0, CANCELLED = 1, EXPIRED = 2;
+
+        private final Runnable task;
+        private final long deadlineNanos;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        private long remainingRounds;
+
+        private Timeout(Runnable task, long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        public long getDeadlineNanos() { return deadlineNanos; }
+        public boolean isCancelled() { return state.get() == CANCELLED; }
+
+        /** Returns true if the task had not fired yet and now never will. */
+        public boolean cancel() {
+            return state.compareAndSet(PENDING, CANCELLED);
+        }
+
+        private void expire() {
+            if (state.compareAndSet(PENDING, EXPIRED)) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    System.out.println("LOG: Expiry task failed: " + e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package auctionaire;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Many threads bidding on one lot at once: the per-bidder cap, closing the auction, and handing back
+ * the slot of a bid that loses the race must all hold however the bids interleave.
+ */
+class AuctionContentionTest {
+    private static final int THREADS = 32;
+    private static final int BIDS_PER_THREAD = 500;
+    private static final int CAP = 10;
+
+    private ExecutorService pool;
+    private AuctionManager manager;
+
+    @BeforeEach
+    void setUp() {
+        pool = Executors.newFixedThreadPool(THREADS);
+        manager = new AuctionManager();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        pool.shutdownNow();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void oneBidderNeverPlacesMoreThanTheCap() throws Exception {
+        int id = manager.addAuction("Lot", 3600, 0);
+        AtomicLong ticker = new AtomicLong();
+
+        Map<BidResult, Integer> results = race(thread -> {
+            Map<BidResult, Integer> counts = new EnumMap<>(BidResult.class);
+            for (int i = 0; i < BIDS_PER_THREAD; i++) {
+                BidResult result = manager.placeBidForResult(id, "greedy", ticker.incrementAndGet() * 0.01);
+                counts.merge(result, 1, Integer::sum);
+            }
+            return counts;
+        });
+
+        assertEquals(CAP, results.getOrDefault(BidResult.ACCEPTED, 0), results.toString());
+        for (BidResult result : results.keySet()) {
+            assertTrue(result == BidResult.ACCEPTED || result == BidResult.BID_LIMIT || result == BidResult.TOO_LOW,
+                    results.toString());
+        }
+        assertEquals(BidResult.BID_LIMIT, manager.placeBidForResult(id, "greedy", ticker.incrementAndGet() * 0.01));
+    }
+
+    @Test
+    void noBidIsAcceptedAfterTheAuctionCloses() throws Exception {
+        int id = manager.addAuction("Lot", 3600, 0);
+        Auction auction = manager.getAuction(id);
+        AtomicLong ticker = new AtomicLong();
+        List<AuctionEvents.Type> seen = new ArrayList<>();
+        List<Double> bidAmounts = new ArrayList<>();
+        double[] endedAmount = new double[1];
+        manager.addEventHandler(batch -> {
+            for (int i = 0; i < batch.size(); i++) {
+                AuctionEvents.Event event = batch.get(i);
+                if (event.auction != auction) continue;
+                seen.add(event.type);
+                if (event.type == AuctionEvents.Type.BID) bidAmounts.add(event.amount);
+                if (event.type == AuctionEvents.Type.ENDED) endedAmount[0] = event.amount;
+            }
+        });
+
+        CyclicBarrier start = new CyclicBarrier(THREADS + 1);
+        List<Future<double[]>> accepted = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            accepted.add(pool.submit(() -> {
+                start.await();
+                double highest = 0;
+                int placed = 0;
+                boolean ended = false;
+                for (int i = 0; i < BIDS_PER_THREAD; i++) {
+                    double amount = ticker.incrementAndGet() * 0.01;
+                    BidResult result = manager.placeBidForResult(id, "bidder-" + thread + "-" + (i / CAP), amount);
+                    if (result == BidResult.AUCTION_ENDED) {
+                        ended = true;
+                    } else if (result == BidResult.ACCEPTED) {
+                        assertFalse(ended, "bid accepted after this thread saw the auction end");
+                        highest = Math.max(highest, amount);
+                        placed++;
+                    }
+                }
+                return new double[] {highest, placed};
+            }));
+        }
+        start.await();
+        while (ticker.get() < THREADS * BIDS_PER_THREAD / 2) {
+            Thread.yield();
+        }
+        manager.stopAuction(id);
+
+        double highest = 0;
+        int placed = 0;
+        for (Future<double[]> future : accepted) {
+            double[] outcome = future.get(30, TimeUnit.SECONDS);
+            highest = Math.max(highest, outcome[0]);
+            placed += (int) outcome[1];
+        }
+        manager.awaitEventsDispatched();
+
+        assertFalse(auction.isActive());
+        assertEquals(BidResult.AUCTION_ENDED, manager.placeBidForResult(id, "late", ticker.incrementAndGet() * 0.01));
+        int endedAt = seen.indexOf(AuctionEvents.Type.ENDED);
+        assertTrue(endedAt >= 0, seen.toString());
+        assertEquals(-1, seen.subList(endedAt, seen.size()).indexOf(AuctionEvents.Type.BID), "a bid followed ENDED");
+        assertEquals(placed, bidAmounts.size());
+        assertEquals(highest, endedAmount[0]);
+        assertEquals(highest, auction.getHighestBid());
+    }
+
+    @Test
+    void aBidRacingTheCloseIsTurnedAway() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            int id = manager.addAuction("Lot " + round, 3600, 0);
+            Auction auction = manager.getAuction(id);
+            List<AuctionEvents.Type> seen = new CopyOnWriteArrayList<>();
+            manager.addEventHandler(batch -> {
+                for (int i = 0; i < batch.size(); i++) {
+                    if (batch.get(i).auction == auction) seen.add(batch.get(i).type);
+                }
+            });
+
+            // Every bid and the close are let go at once, so they reach the auction in whatever order
+            CyclicBarrier start = new CyclicBarrier(THREADS);
+            List<Future<BidResult>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS - 1; t++) {
+                String name = "r" + round + "-" + t;
+                double amount = t + 1;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return manager.placeBidForResult(id, name, amount);
+                }));
+            }
+            Future<?> stop = pool.submit(() -> {
+                start.await();
+                manager.stopAuction(id);
+                return null;
+            });
+            int placed = 0;
+            for (Future<BidResult> future : futures) {
+                BidResult result = future.get(30, TimeUnit.SECONDS);
+                assertTrue(result == BidResult.ACCEPTED || result == BidResult.TOO_LOW || result == BidResult.AUCTION_ENDED,
+                        result.toString());
+                if (result == BidResult.ACCEPTED) placed++;
+            }
+            stop.get(30, TimeUnit.SECONDS);
+            manager.awaitEventsDispatched();
+
+            int endedAt = seen.indexOf(AuctionEvents.Type.ENDED);
+            assertTrue(endedAt >= 0, seen.toString());
+            assertEquals(-1, seen.subList(endedAt, seen.size()).indexOf(AuctionEvents.Type.BID), seen.toString());
+            assertEquals(placed, seen.stream().filter(type -> type == AuctionEvents.Type.BID).count());
+        }
+    }
+
+    @Test
+    void aBidThatLosesTheRaceGetsItsSlotBack() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            int id = manager.addAuction("Lot " + round, 3600, 0);
+            Auction auction = manager.getAuction(id);
+            String prefix = "r" + round + "-";
+
+            // Everyone offers the same amount at once; one wins, and the rest lose either before
+            // reserving a slot or after, when the winner got in between
+            Map<BidResult, Integer> results = race(thread ->
+                    Map.of(manager.placeBidForResult(id, prefix + thread, 1.0), 1));
+            assertEquals(1, results.getOrDefault(BidResult.ACCEPTED, 0), results.toString());
+            assertEquals(THREADS - 1, results.getOrDefault(BidResult.TOO_LOW, 0), results.toString());
+
+            // Every loser still has all of its slots
+            double amount = 1.0;
+            String winner = auction.getHighestBidderName();
+            for (int t = 0; t < THREADS; t++) {
+                String name = prefix + t;
+                if (name.equals(winner)) continue;
+                for (int i = 0; i < CAP; i++) {
+                    amount += 1;
+                    assertEquals(BidResult.ACCEPTED, manager.placeBidForResult(id, name, amount), name + " bid " + i);
+                }
+                amount += 1;
+                assertEquals(BidResult.BID_LIMIT, manager.placeBidForResult(id, name, amount), name);
+            }
+        }
+    }
+
+    private interface Racer {
+        Map<BidResult, Integer> run(int thread) throws Exception;
+    }
+
+    /** Releases every thread at once and adds up the results they report. */
+    private Map<BidResult, Integer> race(Racer racer) throws Exception {
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+        List<Future<Map<BidResult, Integer>>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            Callable<Map<BidResult, Integer>> task = () -> {
+                start.await();
+                return racer.run(thread);
+            };
+            futures.add(pool.submit(task));
+        }
+        Map<BidResult, Integer> total = new EnumMap<>(BidResult.class);
+        for (Future<Map<BidResult, Integer>> future : futures) {
+            future.get(30, TimeUnit.SECONDS).forEach((result, count) -> total.merge(result, count, Integer::sum));
+        }
+        return total;
+    }
+}
@@ -0,0 +1,106 @@
+package auctionaire;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AuctionManager.placeBid from 32 threads, either all on one lot or spread over many.
+ * Counts every bid, accepted or rejected, since both are real request outcomes. The serialized
+ * mode runs each bid under one shared lock, the way the manager took bids before they were made
+ * lock-free, as a baseline for the concurrent path. Each iteration bids on fresh lots, and no
+ * bidder is used past the per-bidder cap, so the rejections are bids losing the race for the lead
+ * rather than BID_LIMIT refusals.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@Threads(32)
+public class BidBenchmark {
+    @Param({"1", "64"})
+    public int lots;
+
+    @Param({"concurrent", "serialized"})
+    public String mode;
+
+    private AuctionManager manager;
+    private boolean serialized;
+    private final Object serial = new Object();
+    private int firstLot;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        manager = new AuctionManager();
+        serialized = "serialized".equals(mode);
+    }
+
+    @Setup(Level.Iteration)
+    public void openLots() {
+        firstLot = manager.addAuction("Lot 0", 3600, 0);
+        for (int i = 1; i < lots; i++) {
+            manager.addAuction("Lot " + i, 3600, 0);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class BidderState {
+        private static final int NAMES = 4096;
+
+        int thread;
+        long bids;
+        long placed;
+        String[] names;
+
+        @Setup(Level.Trial)
+        public void setUp(ThreadParams params) {
+            thread = params.getThreadIndex();
+            names = new String[0];
+            grow(NAMES);
+        }
+
+        @Setup(Level.Iteration)
+        public void rewind() {
+            bids = 0;
+            placed = 0;
+        }
+
+        // A new bidder once the current one has placed ten bids, so none reaches the per-bidder cap.
+        // The names are made ahead of time; only a warmup iteration adds more if it runs out.
+        String bidder() {
+            int index = (int) (placed / 10);
+            if (index == names.length) grow(names.length * 2);
+            return names[index];
+        }
+
+        BidResult count(BidResult result) {
+            if (result.isPlaced()) placed++;
+            return result;
+        }
+
+        private void grow(int size) {
+            int from = names.length;
+            names = Arrays.copyOf(names, size);
+            for (int i = from; i < size; i++) {
+                names[i] = "bench-" + thread + "-" + i;
+            }
+        }
+    }
+
+    @Benchmark
+    public BidResult placeBid(BidderState bidder) {
+        long n = ++bidder.bids;
+        int auctionId = firstLot + (int) ((bidder.thread + n) % lots);
+        double amount = n * 0.0001 + bidder.thread * 0.0000001;
+        if (serialized) {
+            synchronized (serial) {
+                return bidder.count(manager.placeBidForResult(auctionId, bidder.bidder(), amount));
+            }
+        }
+        return bidder.count(manager.placeBidForResult(auctionId, bidder.bidder(), amount));
+    }
+}
@@ -0,0 +1,59 @@
+package auctionaire;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One page of a filtered or sorted /api/auctions query against the catalog indexes, next to the
+ * cost of keeping the price ordering current as bids arrive.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class CatalogBenchmark {
+    @Param({"100", "10000", "100000"})
+    public int auctions;
+
+    private AuctionManager manager;
+    private long bids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        manager = new AuctionManager();
+        for (int i = 0; i < auctions; i++) {
+            manager.addAuction("Vintage item #" + i, 600 + i % 3000, i % 500);
+        }
+    }
+
+    @Benchmark
+    public int endingSoonestPage() {
+        return page(new AuctionCatalog.Query(AuctionCatalog.Order.ENDING, null, null, Double.NaN, Double.NaN, 50, null));
+    }
+
+    @Benchmark
+    public int priceRangePage() {
+        return page(new AuctionCatalog.Query(AuctionCatalog.Order.PRICE, null, null, 250, 260, 50, null));
+    }
+
+    @Benchmark
+    public int namePrefixPage() {
+        return page(new AuctionCatalog.Query(AuctionCatalog.Order.NAME, "vintage item #42", null, Double.NaN, Double.NaN, 50, null));
+    }
+
+    @Benchmark
+    public String bidAndReprice() {
+        long n = ++bids;
+        return manager.placeBid(1 + (int) (n % auctions), "bench-" + (n / 10), 1000 + n * 0.01);
+    }
+
+    private int page(AuctionCatalog.Query query) {
+        try (JsonWriter out = JsonWriter.acquire()) {
+            manager.writeAuctionPageJson(query, out);
+            return out.size();
+        }
+    }
+}
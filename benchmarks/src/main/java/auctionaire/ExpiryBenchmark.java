@@ -0,0 +1,61 @@
+package auctionaire;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Expiry at scale: how long a burst of simultaneous deadlines takes to fire through a timing wheel,
+ * and how long ending and settling that many auctions (each with a winner) takes, up to the point
+ * the event pipeline has paid for, logged and pushed every one of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ExpiryBenchmark {
+    @Param({"1000", "100000"})
+    public int auctions;
+
+    private TimingWheel wheel;
+    private AuctionManager manager;
+    private int firstId;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        wheel = new TimingWheel("bench-expiry", 1, TimeUnit.MILLISECONDS, 512);
+        manager = new AuctionManager();
+    }
+
+    // Fresh auctions with one bid each, so every stop below settles a winner
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        firstId = manager.getLastAuctionId() + 1;
+        for (int i = 0; i < auctions; i++) {
+            manager.addAuction("Lot " + i, 3600, 0);
+            manager.placeBid(firstId + i, "winner-" + (firstId + i), 1);
+        }
+        manager.awaitEventsDispatched();
+    }
+
+    @Benchmark
+    public void fireSimultaneousDeadlines() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(auctions);
+        long now = System.nanoTime();
+        for (int i = 0; i < auctions; i++) {
+            wheel.schedule(fired::countDown, now);
+        }
+        fired.await();
+    }
+
+    @Benchmark
+    public void endAndSettleAuctions() {
+        for (int id = firstId; id < firstId + auctions; id++) {
+            manager.stopAuction(id);
+        }
+        manager.awaitEventsDispatched();
+    }
+}
@@ -0,0 +1,117 @@
+package auctionaire;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Bids per second through AuctionManager with the journal off, on with acknowledgements waiting
+ * for the group commit, and on with acknowledgements returned before the flush; with every thread
+ * on one lot, where the lot's accepted bids are journaled one after another, or spread over many.
+ * As in BidBenchmark, each iteration starts fresh lots and reuses the same bidder names.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@Threads(8)
+public class JournalBenchmark {
+    @Param({"off", "sync", "async"})
+    public String journal;
+
+    @Param({"1", "64"})
+    public int lots;
+
+    private Path dir;
+    private AuctionManager manager;
+    // Shared, so bids mostly rise and get journaled even when every thread is on the same lot
+    private final AtomicLong ticker = new AtomicLong();
+    private int firstLot;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        AuctionJournal auctionJournal = null;
+        if (!"off".equals(journal)) {
+            dir = Files.createTempDirectory("auction-journal-bench");
+            auctionJournal = new AuctionJournal(dir, "sync".equals(journal), 3600);
+        }
+        manager = new AuctionManager(auctionJournal);
+        manager.recover();
+    }
+
+    @Setup(Level.Iteration)
+    public void openLots() {
+        firstLot = manager.addAuction("Lot 0", 3600, 0);
+        for (int i = 1; i < lots; i++) {
+            manager.addAuction("Lot " + i, 3600, 0);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (dir == null) return;
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class BidderState {
+        private static final int NAMES = 1024;
+
+        int thread;
+        long bids;
+        long placed;
+        String[] names;
+
+        @Setup(Level.Trial)
+        public void setUp(ThreadParams params) {
+            thread = params.getThreadIndex();
+            names = new String[0];
+            grow(NAMES);
+        }
+
+        @Setup(Level.Iteration)
+        public void rewind() {
+            bids = 0;
+            placed = 0;
+        }
+
+        // A new bidder once the current one has placed ten bids, from names made ahead of time
+        String bidder() {
+            int index = (int) (placed / 10);
+            if (index == names.length) grow(names.length * 2);
+            return names[index];
+        }
+
+        BidResult count(BidResult result) {
+            if (result.isPlaced()) placed++;
+            return result;
+        }
+
+        private void grow(int size) {
+            int from = names.length;
+            names = Arrays.copyOf(names, size);
+            for (int i = from; i < size; i++) {
+                names[i] = "bench-" + thread + "-" + i;
+            }
+        }
+    }
+
+    @Benchmark
+    public BidResult placeBid(BidderState bidder) {
+        long n = ++bidder.bids;
+        int auctionId = firstLot + (int) ((bidder.thread + n) % lots);
+        return bidder.count(manager.placeBidForResult(auctionId, bidder.bidder(), ticker.incrementAndGet() * 0.0001));
+    }
+}
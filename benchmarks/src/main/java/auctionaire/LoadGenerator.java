@@ -0,0 +1,583 @@
+package auctionaire;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Headless load and soak test for a running server or router. Each simulated bidder behaves like
+ * the bidder page when it falls back to polling: every poll interval it fetches /api/auctions
+ * (revalidating its ETag), /api/user-status and /api/my-wins together, and in between it bids on
+ * a random lot, one of the hot lots, or a lot about to close. A stock of auctions is kept open
+ * through POST /internal/auctions, so the server must run headless or as a shard or router, and
+ * the generator must run on the same host or share its cluster.secret.
+ * Settings are -D properties (or auctionaire.properties entries) starting with "load.".
+ *
+ * Every report interval, and for the whole run at the end, it prints latency percentiles per
+ * endpoint, bid outcomes per second, and the server's heap and thread counts from /api/metrics.
+ * Requests are sent asynchronously at the simulated bidders' pace rather than one after another,
+ * so a slow server shows up as latency instead of quietly lowering the request rate.
+ */
+public final class LoadGenerator {
+    private static final String NAME_PREFIX = "load-bidder-";
+
+    enum Endpoint {
+        AUCTIONS("/api/auctions"), USER_STATUS("/api/user-status"), MY_WINS("/api/my-wins"),
+        BID("/api/bid"), CREATE("/internal/auctions");
+
+        final String path;
+        final Latency latency = new Latency();
+        final LongAdder errors = new LongAdder();
+        // The latest error, shown next to the count
+        volatile String lastError;
+
+        Endpoint(String path) {
+            this.path = path;
+        }
+    }
+
+    private final URI base;
+    // Sent with POST /internal/auctions; servers that have none only take it from loopback
+    private final String secret;
+    private final int bidderCount;
+    private final long durationMillis;
+    private final long reportMillis;
+    private final long pollMillis;
+    private final long bidMillis;
+    private final int auctionStock;
+    private final int auctionSeconds;
+    private final int hotLots;
+    private final double hotFraction;
+    private final long snipeMillis;
+    private final double snipeFraction;
+    private final int streamCount;
+
+    private final HttpClient http;
+    private final ScheduledExecutorService scheduler;
+    // Caps requests in flight, so an unresponsive server cannot exhaust this process instead
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final LongAdder[] bidResults = new LongAdder[BidResult.values().length];
+    private final LongAdder shed = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder latePolls = new LongAdder();
+    private final LongAdder streamBytes = new LongAdder();
+    private final AtomicInteger openAuctions = new AtomicInteger();
+
+    // The most recent listing any bidder fetched, parsed at most every VIEW_REFRESH_MILLIS
+    private static final long VIEW_REFRESH_MILLIS = 250;
+    private volatile AuctionView view = AuctionView.EMPTY;
+    private final ReentrantLock viewLock = new ReentrantLock();
+
+    LoadGenerator(ServerConfig config) {
+        this.base = URI.create(config.get("load.url", "http://localhost:8081").replaceAll("/+$", ""));
+        this.secret = config.get("cluster.secret", "").trim();
+        this.bidderCount = config.getInt("load.bidders", 1000);
+        this.durationMillis = TimeUnit.SECONDS.toMillis(config.getLong("load.durationSeconds", 300));
+        this.reportMillis = TimeUnit.SECONDS.toMillis(config.getLong("load.reportSeconds", 10));
+        this.pollMillis = config.getLong("load.pollMillis", 2000);
+        this.bidMillis = config.getLong("load.bidMillis", 5000);
+        this.auctionStock = config.getInt("load.auctions", 500);
+        this.auctionSeconds = config.getInt("load.auctionSeconds", 60);
+        this.hotLots = config.getInt("load.hotLots", 10);
+        this.hotFraction = Double.parseDouble(config.get("load.hotFraction", "0.3"));
+        this.snipeMillis = TimeUnit.SECONDS.toMillis(config.getLong("load.snipeSeconds", 3));
+        this.snipeFraction = Double.parseDouble(config.get("load.snipeFraction", "0.2"));
+        this.streamCount = config.getInt("load.streams", 0);
+
+        ExecutorService callbacks = Executors.newFixedThreadPool(config.getInt("load.threads", 4), daemon("load-http"));
+        this.http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .executor(callbacks)
+            .build();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(daemon("load-scheduler"));
+        this.maxInFlight = config.getInt("load.maxInFlight", 2000);
+        this.inFlight = new Semaphore(maxInFlight);
+        for (int i = 0; i < bidResults.length; i++) bidResults[i] = new LongAdder();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoadGenerator(ServerConfig.load()).run();
+        System.exit(0);
+    }
+
+    void run() throws InterruptedException {
+        System.out.printf(Locale.ROOT, "Load test against %s: %d bidders polling every %d ms, a bid every %d ms each, "
+                          + "%d auctions of about %d s, for %d s%n", base, bidderCount, pollMillis, bidMillis,
+                          auctionStock, auctionSeconds, TimeUnit.MILLISECONDS.toSeconds(durationMillis));
+        if (auctionStock > 0) {
+            if (!openAuctions(auctionStock, true)) {
+                System.out.println("Could not open auctions through " + Endpoint.CREATE.path
+                                   + "; start the server with -Dserver.headless=true or as a shard or router.");
+                return;
+            }
+            scheduler.scheduleWithFixedDelay(this::restock, 1, 1, TimeUnit.SECONDS);
+        }
+        for (int i = 0; i < streamCount; i++) {
+            openStream(NAME_PREFIX + i);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < bidderCount; i++) {
+            SimulatedBidder bidder = new SimulatedBidder(NAME_PREFIX + i);
+            scheduler.scheduleAtFixedRate(bidder::poll, random.nextLong(pollMillis), pollMillis, TimeUnit.MILLISECONDS);
+            scheduleBid(bidder);
+        }
+
+        long start = System.nanoTime();
+        Totals previous = Totals.take(this, 0);
+        Totals first = previous;
+        long end = start + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        while (System.nanoTime() < end) {
+            TimeUnit.NANOSECONDS.sleep(Math.min(TimeUnit.MILLISECONDS.toNanos(reportMillis), end - System.nanoTime()));
+            Totals current = Totals.take(this, System.nanoTime() - start);
+            report(String.format(Locale.ROOT, "[%5ds]", TimeUnit.NANOSECONDS.toSeconds(current.elapsedNanos)), previous, current);
+            previous = current;
+        }
+        scheduler.shutdownNow();
+        // Let the last requests finish so the summary counts them
+        if (inFlight.tryAcquire(maxInFlight, 30, TimeUnit.SECONDS)) inFlight.release(maxInFlight);
+        report("Summary", first, Totals.take(this, System.nanoTime() - start));
+    }
+
+    // --- Simulated bidders ---
+
+    final class SimulatedBidder {
+        final String name;
+        final String encodedName;
+        // Like the browser: revalidate the listing, and ask only for wins newer than the last page
+        volatile String etag;
+        volatile int winsNext;
+        // Requests of the current poll still outstanding; a poll that finds some skips its turn
+        final AtomicInteger polling = new AtomicInteger();
+
+        SimulatedBidder(String name) {
+            this.name = name;
+            this.encodedName = URLEncoder.encode(name, StandardCharsets.UTF_8);
+        }
+
+        void poll() {
+            if (!polling.compareAndSet(0, 3)) {
+                latePolls.increment();
+                return;
+            }
+            HttpRequest.Builder auctions = get("/api/auctions").header("Accept-Encoding", "identity");
+            String known = etag;
+            if (known != null) auctions.header("If-None-Match", known);
+            send(Endpoint.AUCTIONS, auctions.build(), response -> {
+                polling.decrementAndGet();
+                if (response.statusCode() == 200) {
+                    etag = response.headers().firstValue("ETag").orElse(null);
+                    offerListing(etag, response.body());
+                }
+                return response.statusCode() == 200 || response.statusCode() == 304;
+            }, () -> polling.decrementAndGet());
+            send(Endpoint.USER_STATUS, get("/api/user-status?bidderName=" + encodedName).build(), response -> {
+                polling.decrementAndGet();
+                return response.statusCode() == 200;
+            }, () -> polling.decrementAndGet());
+            send(Endpoint.MY_WINS, get("/api/my-wins?bidderName=" + encodedName + "&since=" + winsNext).build(), response -> {
+                polling.decrementAndGet();
+                if (response.statusCode() != 200) return false;
+                String next = ShardRouter.field(response.body(), "next");
+                if (next != null) winsNext = Integer.parseInt(next);
+                return true;
+            }, () -> polling.decrementAndGet());
+        }
+
+        void bid() {
+            AuctionView current = view;
+            if (current.ids.length == 0) return;
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int lot = -1;
+            double roll = random.nextDouble();
+            if (roll < snipeFraction) {
+                lot = current.closingSoon(System.currentTimeMillis(), snipeMillis, random);
+            } else if (roll < snipeFraction + hotFraction && current.hot.length > 0) {
+                lot = current.hot[random.nextInt(current.hot.length)];
+            }
+            if (lot < 0) lot = random.nextInt(current.ids.length);
+            // A few percent over the last price seen; a stale price is rejected as too low, as it would be for a person
+            double amount = Math.ceil(current.prices[lot] * (1.01 + random.nextDouble() * 0.05) + 1);
+            String form = "auctionId=" + current.ids[lot] + "&bidderName=" + encodedName
+                          + "&bidAmount=" + String.format(Locale.ROOT, "%.2f", amount);
+            send(Endpoint.BID, post(Endpoint.BID.path, form), response -> {
+                if (response.statusCode() == 503) {
+                    shed.increment();
+                    return true;
+                }
+                if (response.statusCode() != 200) return false;
+                BidResult result = parseBidResult(response.body());
+                if (result == null) return false;
+                bidResults[result.ordinal()].increment();
+                return true;
+            }, null);
+        }
+    }
+
+    private void scheduleBid(SimulatedBidder bidder) {
+        // Exponential gaps: bidders act independently, so bids arrive as a Poisson process
+        long delay = (long) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * bidMillis);
+        scheduler.schedule(() -> {
+            bidder.bid();
+            scheduleBid(bidder);
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private static BidResult parseBidResult(String body) {
+        for (BidResult result : BidResult.values()) {
+            if (result.getMessage().equals(body)) return result;
+        }
+        return null;
+    }
+
+    // --- Auction stock ---
+
+    private boolean openAuctions(int count, boolean wait) throws InterruptedException {
+        List<CompletableFuture<Boolean>> created = new ArrayList<>(count);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < count; i++) {
+            // Lengths spread around the mean so auctions keep closing throughout the run
+            int seconds = Math.max(1, (int) (auctionSeconds * (0.5 + random.nextDouble())));
+            String form = "itemName=" + URLEncoder.encode("Load lot " + random.nextInt(1_000_000), StandardCharsets.UTF_8)
+                          + "&durationSeconds=" + seconds + "&startPrice=" + (1 + random.nextInt(100));
+            CompletableFuture<Boolean> done = new CompletableFuture<>();
+            created.add(done);
+            send(Endpoint.CREATE, post(Endpoint.CREATE.path, form), response -> {
+                boolean ok = response.statusCode() == 200;
+                if (ok && !scheduler.isShutdown()) {
+                    openAuctions.incrementAndGet();
+                    scheduler.schedule(openAuctions::decrementAndGet, seconds, TimeUnit.SECONDS);
+                }
+                done.complete(ok);
+                return ok;
+            }, () -> done.complete(false));
+        }
+        if (!wait) return true;
+        int opened = 0;
+        for (CompletableFuture<Boolean> done : created) {
+            try {
+                if (done.get(30, TimeUnit.SECONDS)) opened++;
+            } catch (Exception e) {
+                // Counted as not opened
+            }
+        }
+        return opened > 0;
+    }
+
+    // Replaces auctions as they close, spread over a few seconds rather than in one burst
+    private void restock() {
+        int missing = auctionStock - openAuctions.get();
+        if (missing <= 0) return;
+        try {
+            openAuctions(Math.min(missing, Math.max(auctionStock / 10, 1)), false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // --- What the bidders know about the auctions ---
+
+    /** Open auctions as last listed: ids, prices and deadlines side by side, plus the priciest few as the hot lots. */
+    static final class AuctionView {
+        static final AuctionView EMPTY = new AuctionView(null, 0, new int[0], new double[0], new long[0], new int[0]);
+
+        final String etag;
+        final long parsedAtMillis;
+        final int[] ids;
+        final double[] prices;
+        final long[] endsAt;
+        // Positions in the arrays above
+        final int[] hot;
+
+        AuctionView(String etag, long parsedAtMillis, int[] ids, double[] prices, long[] endsAt, int[] hot) {
+            this.etag = etag;
+            this.parsedAtMillis = parsedAtMillis;
+            this.ids = ids;
+            this.prices = prices;
+            this.endsAt = endsAt;
+            this.hot = hot;
+        }
+
+        // A random lot closing within the window, or -1 if none is
+        int closingSoon(long now, long window, ThreadLocalRandom random) {
+            int found = 0;
+            int chosen = -1;
+            for (int i = 0; i < ids.length; i++) {
+                long left = endsAt[i] - now;
+                // Reservoir sampling: every closing lot is equally likely without collecting them first
+                if (left > 0 && left <= window && random.nextInt(++found) == 0) chosen = i;
+            }
+            return chosen;
+        }
+
+        static AuctionView parse(String etag, String json, int hotLots) {
+            List<String> auctions = ShardRouter.arrayElements(json, json.indexOf('['));
+            int n = auctions.size();
+            int[] ids = new int[n];
+            double[] prices = new double[n];
+            long[] endsAt = new long[n];
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                String auction = auctions.get(i);
+                ids[i] = Integer.parseInt(ShardRouter.field(auction, "id"));
+                prices[i] = Double.parseDouble(ShardRouter.field(auction, "highestBid"));
+                endsAt[i] = Long.parseLong(ShardRouter.field(auction, "endsAt"));
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(prices[b], prices[a]));
+            int[] hot = new int[Math.min(hotLots, n)];
+            for (int i = 0; i < hot.length; i++) hot[i] = order[i];
+            return new AuctionView(etag, System.currentTimeMillis(), ids, prices, endsAt, hot);
+        }
+    }
+
+    // Thousands of bidders fetch the same few listings; only one of them parses, and not too often
+    private void offerListing(String etag, String json) {
+        AuctionView current = view;
+        if (etag == null || etag.equals(current.etag)
+            || System.currentTimeMillis() - current.parsedAtMillis < VIEW_REFRESH_MILLIS || !viewLock.tryLock()) {
+            return;
+        }
+        try {
+            view = AuctionView.parse(etag, json, hotLots);
+        } finally {
+            viewLock.unlock();
+        }
+    }
+
+    // --- Event streams ---
+
+    // Holds a stream open and counts what arrives; the frames themselves are not looked at
+    private void openStream(String bidderName) {
+        HttpRequest request = get("/api/stream?bidderName=" + URLEncoder.encode(bidderName, StandardCharsets.UTF_8))
+            .timeout(Duration.ofDays(1)).build();
+        http.sendAsync(request, HttpResponse.BodyHandlers.ofByteArrayConsumer(chunk -> chunk.ifPresent(bytes -> streamBytes.add(bytes.length))))
+            .whenComplete((response, failure) -> {
+                if (!scheduler.isShutdown()) {
+                    // Like the browser, reconnect after a pause when the stream ends
+                    scheduler.schedule(() -> openStream(bidderName), 1, TimeUnit.SECONDS);
+                }
+            });
+    }
+
+    // --- HTTP ---
+
+    interface ResponseCheck {
+        /** Handles the answer; false counts it as an error. */
+        boolean accept(HttpResponse<String> response);
+    }
+
+    private void send(Endpoint endpoint, HttpRequest request, ResponseCheck check, Runnable onSkipOrFailure) {
+        if (!inFlight.tryAcquire()) {
+            skipped.increment();
+            if (onSkipOrFailure != null) onSkipOrFailure.run();
+            return;
+        }
+        long start = System.nanoTime();
+        http.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, failure) -> {
+            inFlight.release();
+            endpoint.latency.record(System.nanoTime() - start);
+            boolean ok = false;
+            String error;
+            if (failure == null) {
+                error = "HTTP " + response.statusCode();
+                try {
+                    ok = check.accept(response);
+                } catch (RuntimeException e) {
+                    error = e.toString();
+                }
+            } else {
+                error = (failure.getCause() != null ? failure.getCause() : failure).toString();
+                if (onSkipOrFailure != null) onSkipOrFailure.run();
+            }
+            if (!ok) {
+                endpoint.errors.increment();
+                endpoint.lastError = error;
+            }
+        });
+    }
+
+    private HttpRequest.Builder get(String pathAndQuery) {
+        return HttpRequest.newBuilder(URI.create(base + pathAndQuery)).timeout(Duration.ofSeconds(30));
+    }
+
+    private HttpRequest post(String path, String form) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(base + path))
+            .timeout(Duration.ofSeconds(30))
+            .header("Content-Type", "application/x-www-form-urlencoded")
+            .POST(HttpRequest.BodyPublishers.ofString(form));
+        if (!secret.isEmpty()) request.header(ShardMap.SECRET_HEADER, secret);
+        return request.build();
+    }
+
+    // The server's own view of itself; -1 where the server could not be asked
+    private long[] serverStats() {
+        long[] stats = {-1, -1, -1};
+        try {
+            HttpResponse<String> response = http.send(get("/api/metrics").build(), HttpResponse.BodyHandlers.ofString());
+            for (String line : response.body().split("\n")) {
+                if (line.startsWith("auctionaire_jvm_heap_used_bytes ")) stats[0] = parseSample(line);
+                else if (line.startsWith("auctionaire_jvm_heap_max_bytes ")) stats[1] = parseSample(line);
+                else if (line.startsWith("auctionaire_jvm_threads ")) stats[2] = parseSample(line);
+            }
+        } catch (IOException e) {
+            // Reported as unknown
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return stats;
+    }
+
+    private static long parseSample(String line) {
+        return Long.parseLong(line.substring(line.lastIndexOf(' ') + 1).trim());
+    }
+
+    // --- Reporting ---
+
+    /** Cumulative counts at one moment; a report is the difference between two of these. */
+    static final class Totals {
+        final long elapsedNanos;
+        final long[][] latencies = new long[Endpoint.values().length][];
+        final long[] errors = new long[Endpoint.values().length];
+        final long[] bids = new long[BidResult.values().length];
+        final long shed;
+        final long skipped;
+        final long latePolls;
+        final long streamBytes;
+        final long[] server;
+
+        private Totals(LoadGenerator load, long elapsedNanos) {
+            this.elapsedNanos = elapsedNanos;
+            for (Endpoint endpoint : Endpoint.values()) {
+                latencies[endpoint.ordinal()] = endpoint.latency.snapshot();
+                errors[endpoint.ordinal()] = endpoint.errors.sum();
+            }
+            for (int i = 0; i < bids.length; i++) bids[i] = load.bidResults[i].sum();
+            this.shed = load.shed.sum();
+            this.skipped = load.skipped.sum();
+            this.latePolls = load.latePolls.sum();
+            this.streamBytes = load.streamBytes.sum();
+            this.server = elapsedNanos > 0 ? load.serverStats() : new long[] {-1, -1, -1};
+        }
+
+        static Totals take(LoadGenerator load, long elapsedNanos) {
+            return new Totals(load, elapsedNanos);
+        }
+    }
+
+    private void report(String label, Totals from, Totals to) {
+        double seconds = Math.max((to.elapsedNanos - from.elapsedNanos) / 1e9, 1e-9);
+        long accepted = to.bids[BidResult.ACCEPTED.ordinal()] - from.bids[BidResult.ACCEPTED.ordinal()];
+        long outbid = to.bids[BidResult.OUTBID.ordinal()] - from.bids[BidResult.OUTBID.ordinal()];
+        StringBuilder rejected = new StringBuilder();
+        long rejectedTotal = 0;
+        for (BidResult result : BidResult.values()) {
+            if (result.isPlaced()) continue;
+            long count = to.bids[result.ordinal()] - from.bids[result.ordinal()];
+            rejectedTotal += count;
+            if (count > 0) rejected.append(String.format(Locale.ROOT, " %s %.1f", result.getCode(), count / seconds));
+        }
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.ROOT, "%s bids/s: accepted %.1f, outbid %.1f, rejected %.1f%s, shed (503) %.1f%n",
+                                 label, accepted / seconds, outbid / seconds, rejectedTotal / seconds,
+                                 rejected.length() > 0 ? " (" + rejected.toString().trim() + ")" : "",
+                                 (to.shed - from.shed) / seconds));
+        for (Endpoint endpoint : Endpoint.values()) {
+            long[] counts = Latency.minus(to.latencies[endpoint.ordinal()], from.latencies[endpoint.ordinal()]);
+            long requests = Latency.total(counts);
+            if (requests == 0) continue;
+            long errors = to.errors[endpoint.ordinal()] - from.errors[endpoint.ordinal()];
+            out.append(String.format(Locale.ROOT, "    %-18s %8.1f req/s  p50 %8.2f ms  p99 %8.2f ms  p999 %8.2f ms  errors %d%s%n",
+                                     endpoint.path, requests / seconds, Latency.quantileMillis(counts, 0.5),
+                                     Latency.quantileMillis(counts, 0.99), Latency.quantileMillis(counts, 0.999),
+                                     errors, errors > 0 ? " (last: " + endpoint.lastError + ")" : ""));
+        }
+        out.append(String.format(Locale.ROOT, "    server heap %s of %s MB, %s threads; client skipped %d requests and %d polls",
+                                 megabytes(to.server[0]), megabytes(to.server[1]), to.server[2] < 0 ? "?" : Long.toString(to.server[2]),
+                                 to.skipped - from.skipped, to.latePolls - from.latePolls));
+        if (streamCount > 0) {
+            out.append(String.format(Locale.ROOT, "; streams %.1f KB/s", (to.streamBytes - from.streamBytes) / seconds / 1024));
+        }
+        System.out.println(out);
+    }
+
+    private static String megabytes(long bytes) {
+        return bytes < 0 ? "?" : Long.toString(bytes >> 20);
+    }
+
+    /**
+     * Latency histogram with buckets 2% wide from one microsecond to a few minutes, fine enough for
+     * p999 and cheap enough to record from every callback. Percentiles are bucket upper bounds.
+     */
+    static final class Latency {
+        private static final double GROWTH = 1.02;
+        private static final double LOG_GROWTH = Math.log(GROWTH);
+        private static final int BUCKETS = 1000;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+        void record(long nanos) {
+            double micros = Math.max(nanos / 1000.0, 1);
+            counts.incrementAndGet(Math.min((int) (Math.log(micros) / LOG_GROWTH), BUCKETS - 1));
+        }
+
+        long[] snapshot() {
+            long[] snapshot = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) snapshot[i] = counts.get(i);
+            return snapshot;
+        }
+
+        static long[] minus(long[] to, long[] from) {
+            long[] difference = new long[to.length];
+            for (int i = 0; i < to.length; i++) difference[i] = to[i] - from[i];
+            return difference;
+        }
+
+        static long total(long[] counts) {
+            long total = 0;
+            for (long count : counts) total += count;
+            return total;
+        }
+
+        static double quantileMillis(long[] counts, double q) {
+            long rank = (long) Math.ceil(q * total(counts));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.pow(GROWTH, i + 1) / 1000;
+            }
+            return Double.POSITIVE_INFINITY;
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,73 @@
+package auctionaire;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Form decoding of the bodies the bid endpoints receive: the map-building parseQuery against the
+ * byte-level Form the handlers use, borrowed from and returned to its pool as a handler does. Run
+ * with -prof gc to compare allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ParseQueryBenchmark {
+    private String bidBody;
+    private String batchBody;
+
+    @Setup
+    public void setUp() {
+        bidBody = "auctionId=42&bidderName=Jane%20Doe&bidAmount=150.25";
+        StringBuilder bids = new StringBuilder();
+        for (int i = 1; i <= 100; i++) {
+            if (i > 1) bids.append("%2C");
+            bids.append(i).append("%3A").append(100 + i).append(".50");
+        }
+        batchBody = "bidderName=Jane%20Doe&bids=" + bids;
+    }
+
+    @Benchmark
+    public Map<String, String> parseBidBody() {
+        return FormCodec.parseQuery(bidBody);
+    }
+
+    @Benchmark
+    public Map<String, String> parseBatchBody() {
+        return FormCodec.parseQuery(batchBody);
+    }
+
+    // Same fields the bid handler reads: two primitives and the bidder name
+    @Benchmark
+    public void decodeBidBody(Blackhole blackhole) {
+        try (FormCodec.Form form = FormCodec.readQuery(bidBody)) {
+            blackhole.consume(form.getInt("auctionId", -1));
+            blackhole.consume(form.getString("bidderName"));
+            blackhole.consume(form.getDouble("bidAmount", Double.NaN));
+        }
+    }
+
+    @Benchmark
+    public double decodeBatchBody() {
+        try (FormCodec.Form form = FormCodec.readQuery(batchBody)) {
+            int length = form.decode("bids");
+            byte[] bids = form.scratch();
+            double total = 0;
+            int start = 0;
+            while (start < length) {
+                int end = start;
+                while (end < length && bids[end] != ',') end++;
+                int colon = start;
+                while (bids[colon] != ':') colon++;
+                total += FormCodec.parseInt(bids, start, colon) + FormCodec.parseDouble(bids, colon + 1, end);
+                start = end + 1;
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package auctionaire;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON encoding of one auction and of the active-auction list. The cached variant measures a read
+ * with no state change in between; the after-bid variant forces the snapshot to be re-encoded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class SerializationBenchmark {
+    @Param({"100", "10000", "100000"})
+    public int auctions;
+
+    private AuctionManager manager;
+    private long bids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        manager = new AuctionManager();
+        for (int i = 0; i < auctions; i++) {
+            manager.addAuction("Vintage item #" + i, 3600, 10);
+        }
+    }
+
+    @Benchmark
+    public String auctionToJson() {
+        return manager.getAuction(1 + (int) (++bids % auctions)).toJson();
+    }
+
+    @Benchmark
+    public String activeAuctionsAsJsonCached() {
+        return manager.getActiveAuctionsAsJson();
+    }
+
+    @Benchmark
+    public String activeAuctionsAsJsonAfterBid() {
+        long n = ++bids;
+        manager.placeBid(1, "bench-" + (n / 10), 10 + n * 0.0001);
+        return manager.getActiveAuctionsAsJson();
+    }
+}
@@ -0,0 +1,132 @@
+#!/usr/bin/env bash
+# End-to-end check of a sharded deployment: two shards and a router on localhost, driven through
+# the router the way bidders and load tools use it. Covers bid forwarding, a win on one shard
+# charged exactly once on the bidder's home shard, and a shard that dies with a charge in flight
+# and settles it again on restart without charging twice.
+#
+# Build first (mvn -B package -DskipTests), then run from the repository root:
+#     scripts/cluster-test.sh
+# Settings: JAR (the server jar), BASE_PORT (router port; shards use the next two).
+# Exits non-zero on the first failed check; server logs are left in the printed work directory.
+
+set -euo pipefail
+
+JAR=${JAR:-Auctionaire/target/auctionaire-server.jar}
+BASE_PORT=${BASE_PORT:-18190}
+SECRET=cluster-test-secret
+ROUTER=http://localhost:$BASE_PORT
+SHARD0=http://localhost:$((BASE_PORT + 1))
+SHARD1=http://localhost:$((BASE_PORT + 2))
+WORK=$(mktemp -d)
+PIDS=()
+
+[ -f "$JAR" ] || { echo "No server jar at $JAR; build it first" >&2; exit 2; }
+JAR=$(cd "$(dirname "$JAR")" && pwd)/$(basename "$JAR")
+
+cleanup() {
+    for pid in "${PIDS[@]:-}"; do
+        [ -n "$pid" ] && kill -CONT "$pid" 2>/dev/null && kill -9 "$pid" 2>/dev/null
+    done
+    wait 2>/dev/null || true
+}
+trap cleanup EXIT
+
+# start <name> <port> <extra -D options...>; sets STARTED to the new process's pid
+start() {
+    local name=$1 port=$2
+    shift 2
+    java -Dserver.headless=true -Dserver.port="$port" -Dcluster.secret=$SECRET \
+         -Dcluster.shards="$SHARD0,$SHARD1" "$@" -jar "$JAR" >> "$WORK/$name.log" 2>&1 &
+    STARTED=$!
+    PIDS+=("$STARTED")
+    for _ in $(seq 1 100); do
+        curl -s -o /dev/null "http://localhost:$port/api/metrics" && return 0
+        sleep 0.2
+    done
+    echo "FAIL: $name did not start; see $WORK/$name.log" >&2
+    exit 1
+}
+
+start_shard() {
+    start "shard-$1" $((BASE_PORT + 1 + $1)) -Dcluster.role=shard -Dcluster.shardIndex="$1" \
+          -Dauction.journal.dir="$WORK/data-$1"
+    SHARD_PIDS[$1]=$STARTED
+}
+
+check() {
+    local what=$1 expected=$2 actual=$3
+    if [ "$expected" != "$actual" ]; then
+        echo "FAIL: $what: expected '$expected', got '$actual' (logs in $WORK)" >&2
+        exit 1
+    fi
+    echo "ok   $what"
+}
+
+open_auction() {
+    curl -s -X POST -H "X-Cluster-Secret: $SECRET" \
+         -d "itemName=$1&durationSeconds=$2&startPrice=1" "$ROUTER/internal/auctions"
+}
+
+bid() {
+    curl -s -X POST -d "auctionId=$1&bidderName=$2&bidAmount=$3" "$ROUTER/api/bid"
+}
+
+wallet() {
+    curl -s "$1/api/user-status?bidderName=$2" | sed -n 's/.*"wallet":\([0-9.]*\).*/\1/p'
+}
+
+win_count() {
+    curl -s "$1/api/my-wins?bidderName=$2" | grep -o '"auctionId":' | wc -l | tr -d ' '
+}
+
+# Seconds to wait for an auction opened for $1 seconds to end and settle
+settle_wait() {
+    sleep $(($1 + 2))
+}
+
+# bob's wallet and wins live on shard 1, alice's on shard 0 (ShardMap.homeOf)
+SHARD_PIDS=()
+start_shard 0
+start_shard 1
+start router "$BASE_PORT" -Dcluster.role=router
+echo "Cluster up; logs in $WORK"
+
+check "/internal refuses callers without the secret" 403 \
+      "$(curl -s -o /dev/null -w '%{http_code}' -X POST -d 'x' "$SHARD1/internal/charge")"
+
+# Auctions are handed to the shards in turn, and ids name their shard
+check "first auction opens on shard 0" 1 "$(open_auction lamp 4)"
+check "second auction opens on shard 1" 2 "$(open_auction vase 60)"
+
+check "bid on shard 0's auction through the router" "Success: Your bid has been placed!" "$(bid 1 bob 7)"
+check "bid on shard 1's auction through the router" "Success: Your bid has been placed!" "$(bid 2 alice 5)"
+check "shard 0 holds bob's bid" 1 "$(curl -s "$SHARD0/api/auctions" | grep -c '"highestBidder":"bob"')"
+check "shard 1 holds alice's bid" 1 "$(curl -s "$SHARD1/api/auctions" | grep -c '"highestBidder":"alice"')"
+check "router lists both shards' auctions" 2 "$(curl -s "$ROUTER/api/auctions" | grep -o '"id":' | wc -l | tr -d ' ')"
+
+# Auction 1 ends on shard 0 and bob pays on shard 1
+settle_wait 4
+check "remote winner charged on the home shard" 9993.00 "$(wallet "$SHARD1" bob)"
+check "remote win recorded once" 1 "$(win_count "$ROUTER" bob)"
+check "the router reads bob's wallet from shard 1" 9993.00 "$(wallet "$ROUTER" bob)"
+
+# Shard 0 sends a charge while shard 1 is frozen, then dies before it hears the answer. Shard 1
+# applies the charge once it thaws; restarted, shard 0 must charge again and get the same outcome.
+check "third auction opens on shard 0" 3 "$(open_auction clock 3)"
+check "bid on the third auction" "Success: Your bid has been placed!" "$(bid 3 bob 9)"
+kill -STOP "${SHARD_PIDS[1]}"
+settle_wait 3
+kill -9 "${SHARD_PIDS[0]}"
+wait "${SHARD_PIDS[0]}" 2>/dev/null || true
+kill -CONT "${SHARD_PIDS[1]}"
+sleep 2
+check "the in-flight charge went through on shard 1" 9984.00 "$(wallet "$SHARD1" bob)"
+start_shard 0
+settle_wait 0
+check "shard 0 settled the auction after restarting" 0 "$(curl -s "$SHARD0/api/auctions" | grep -c '"id":3,')"
+check "the retried charge did not charge again" 9984.00 "$(wallet "$SHARD1" bob)"
+check "the retried charge did not record a second win" 2 "$(win_count "$SHARD1" bob)"
+check "shard 0 counts it as sold" 1 \
+      "$(curl -s "$SHARD0/api/metrics" | sed -n 's/^auctionaire_auctions_ended_total{outcome="sold"} //p')"
+
+echo "All cluster checks passed."